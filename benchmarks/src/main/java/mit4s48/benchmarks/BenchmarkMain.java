@@ -0,0 +1,28 @@
+package mit4s48.benchmarks;
+
+/*************************************************************************
+ *  Compilation:  mvn package
+ *  Execution:    java -jar target/benchmarks.jar [JMH options]
+ *  Dependencies: org.openjdk.jmh
+ *
+ *  Entry point of the benchmark jar. Runs JMH with the command line
+ *  options and the GC profiler always added, so each benchmark reports
+ *  its allocation rate (gc.alloc.rate) and allocation per operation
+ *  (gc.alloc.rate.norm) next to its time.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder().parent(cmd).addProfiler(GCProfiler.class).build()).run();
+    }
+
+}
@@ -0,0 +1,89 @@
+package mit4s48.benchmarks;
+
+/*************************************************************************
+ *  Compilation:  mvn package
+ *  Dependencies: MichellStructure.java  Truss.java  TrussTopology.java
+ *                Jama.Matrix  processing.core
+ *
+ *  Inputs shared by the benchmarks: solved Michell trusses, the matrices
+ *  of StructuralAnalysis.JointMethod for them, and an offscreen Processing
+ *  canvas to draw on.
+ *
+ *  The benchmark sizes are numbers of bars ne = 2*na^2 for na levels, so
+ *  every size is a complete Michell truss (2 + na^2 nodes, ne elements).
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.awt.HeadlessException;
+
+import Jama.Matrix;
+import mit4s48.MichellStructure;
+import mit4s48.Truss;
+import mit4s48.TrussGeometry;
+import mit4s48.TrussTopology;
+import processing.core.PApplet;
+import processing.core.PConstants;
+
+final class Fixtures {
+
+    /** Support distance and span of all benchmark trusses. */
+    static final float H = 8;
+    static final float L = 40;
+
+    private Fixtures() {}
+
+    /**
+     *  Returns the Michell truss with ne bars, analyzed under the standard
+     *  load case.
+     */
+    static Truss michell(int ne) {
+        return MichellStructure.solve(ne, H, L, 0, MichellStructure.LOAD).truss();
+    }
+
+    /**
+     *  Returns the inputs N, T, S and L of StructuralAnalysis.JointMethod
+     *  for the standard load case of a Michell truss.
+     */
+    static Matrix[] jointMethodInputs(Truss truss) {
+        TrussGeometry G = truss.geometry();
+        int NN = G.numNodes();
+        Matrix N = new Matrix(NN, 2);
+        for (int n=0; n<NN; n++) {
+            N.set(n, 0, G.x(n));
+            N.set(n, 1, G.y(n));
+        }
+        TrussTopology topology = new TrussTopology(truss.topology());
+        Matrix T = new Matrix(topology.numElements(), 2);
+        for (int e=0; e<topology.numElements(); e++) {
+            T.set(e, 0, topology.from(e));
+            T.set(e, 1, topology.to(e));
+        }
+        Matrix S = new Matrix(new double[][]{{0, 1}, {0, 2}, {1, 1}, {1, 2}});
+        Matrix Ld = new Matrix(new double[][]{{NN-1, 0, MichellStructure.LOAD}});
+        return new Matrix[]{N, T, S, Ld};
+    }
+
+    /**
+     *  Returns a PApplet that draws into an offscreen Java2D canvas of the
+     *  given size, made by createGraphics. The applet is never started,
+     *  so no window opens. In Processing 2.2.1 a PApplet is an AWT Applet,
+     *  which cannot be created where AWT is headless: the render
+     *  benchmarks need a display (on a build server, run them under Xvfb).
+     *
+     *  @throws IllegalStateException if AWT is headless
+     */
+    static PApplet canvas(int width, int height) {
+        PApplet p5;
+        try {
+            p5 = new PApplet();
+        } catch (HeadlessException e) {
+            throw new IllegalStateException("Drawing needs a display; run the render benchmarks under Xvfb", e);
+        }
+        p5.g = p5.createGraphics(width, height, PConstants.JAVA2D);
+        p5.width = width;
+        p5.height = height;
+        return p5;
+    }
+
+}
@@ -0,0 +1,101 @@
+package mit4s48.benchmarks;
+
+/*************************************************************************
+ *  Compilation:  mvn package
+ *  Execution:    java -jar target/benchmarks.jar JointMethodBenchmark
+ *  Dependencies: StructuralAnalysis.java  JointFactorization.java
+ *                org.openjdk.jmh
+ *
+ *  The method of joints at increasing numbers of DOFs, on the Michell
+ *  truss with ne bars (2*(2 + ne/2) DOFs): the dense JointMethod, the
+ *  sparse method from Jama inputs and from primitive arrays, the same in
+ *  a reused workspace (which should allocate nothing), and one load case
+ *  on a truss that has already been factorized.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.concurrent.TimeUnit;
+
+import Jama.Matrix;
+import mit4s48.JointFactorization;
+import mit4s48.JointWorkspace;
+import mit4s48.StructuralAnalysis;
+import mit4s48.Truss;
+import mit4s48.TrussTopology;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JointMethodBenchmark {
+
+    @Param({"8", "32", "98", "200", "800", "1800"})
+    public int ne;
+
+    private Matrix N, T, S, L;
+    private double[] xy, Q, x;
+    private int[] from, to, supports;
+    private JointFactorization factorization;
+    private JointWorkspace workspace;
+
+    @Setup
+    public void setup() {
+        Truss truss = Fixtures.michell(ne);
+        Matrix[] in = Fixtures.jointMethodInputs(truss);
+        N = in[0];
+        T = in[1];
+        S = in[2];
+        L = in[3];
+
+        TrussTopology topology = new TrussTopology(truss.topology());
+        xy = truss.geometry().coordinates().clone();
+        from = topology.starts();
+        to = topology.ends();
+        supports = new int[]{0, 1, 0, 2, 1, 1, 1, 2};
+        Q = new double[xy.length];
+        Q[xy.length-1] = L.get(0, 2);
+        factorization = new JointFactorization(xy, from, to, supports);
+        workspace = new JointWorkspace(xy.length/2, from.length, supports.length/2);
+        x = new double[xy.length];
+    }
+
+    @Benchmark
+    public Matrix[] dense() {
+        return StructuralAnalysis.JointMethod(N, T, S, L);
+    }
+
+    @Benchmark
+    public Matrix[] sparse() {
+        return StructuralAnalysis.SparseJointMethod(N, T, S, L);
+    }
+
+    @Benchmark
+    public Matrix[] sparsePrimitive() {
+        return StructuralAnalysis.SparseJointMethod(xy, from, to, supports, Q);
+    }
+
+    @Benchmark
+    public double[] workspace() {
+        return StructuralAnalysis.JointMethod(xy, from, to, supports, Q, workspace, x);
+    }
+
+    @Benchmark
+    public double[] factorizedSolve() {
+        return factorization.solveVector(Q);
+    }
+
+}
@@ -0,0 +1,65 @@
+package mit4s48.benchmarks;
+
+/*************************************************************************
+ *  Compilation:  mvn package
+ *  Execution:    java -jar target/benchmarks.jar LayoutBenchmark
+ *  Dependencies: LayoutOptimizer.java  MichellStructure.java  org.openjdk.jmh
+ *
+ *  A fixed number of layout optimization iterations on a freshly
+ *  generated Michell truss with ne bars, the unit of work of an
+ *  optimization inside a sweep.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.concurrent.TimeUnit;
+
+import mit4s48.LayoutOptimizer;
+import mit4s48.LayoutResult;
+import mit4s48.MichellStructure;
+import mit4s48.Truss;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayoutBenchmark {
+
+    static final int ITERATIONS = 20;
+
+    @Param({"98", "800", "1800"})
+    public int ne;
+
+    private LayoutOptimizer optimizer;
+    private double gama;
+
+    @Setup
+    public void setup() {
+        gama = MichellStructure.gama(ne, Fixtures.H, Fixtures.L);
+        Truss truss = MichellStructure.generate(ne, Fixtures.H, Fixtures.L, gama);
+        double[] Q = new double[2*truss.numNodes()];
+        Q[Q.length-1] = MichellStructure.LOAD;
+        optimizer = new LayoutOptimizer(new int[]{0, 1, 0, 2, 1, 1, 1, 2}, Q);
+        optimizer.setMaxIterations(ITERATIONS);
+        optimizer.setTolerance(0);
+    }
+
+    @Benchmark
+    public LayoutResult optimize() {
+        return optimizer.optimize(MichellStructure.generate(ne, Fixtures.H, Fixtures.L, gama));
+    }
+
+}
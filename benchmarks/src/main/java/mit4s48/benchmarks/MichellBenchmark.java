@@ -0,0 +1,85 @@
+package mit4s48.benchmarks;
+
+/*************************************************************************
+ *  Compilation:  mvn package
+ *  Execution:    java -jar target/benchmarks.jar MichellBenchmark
+ *  Dependencies: MichellStructure.java  org.openjdk.jmh
+ *
+ *  Generation and analysis of Michell trusses by number of bars: the gama
+ *  search alone, the geometry for a known gama (the topology comes from
+ *  the shared cache), the analysis of a generated truss, the whole
+ *  pipeline as used by the application and the sweeps, and the in-place
+ *  update of a truss for a slightly different span (incremental analysis).
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.concurrent.TimeUnit;
+
+import mit4s48.MichellResult;
+import mit4s48.MichellStructure;
+import mit4s48.Truss;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MichellBenchmark {
+
+    @Param({"2", "8", "18", "32", "50", "72", "98", "200", "800", "1800", "5000"})
+    public int ne;
+
+    private double gama;
+    private Truss truss;
+    private Truss updated;
+    private int updates;
+
+    @Setup
+    public void setup() {
+        gama = MichellStructure.gama(ne, Fixtures.H, Fixtures.L);
+        truss = MichellStructure.generate(ne, Fixtures.H, Fixtures.L, gama);
+        updated = MichellStructure.generate(ne, Fixtures.H, Fixtures.L, gama);
+        MichellStructure.update(updated, Fixtures.H, Fixtures.L, 0, MichellStructure.LOAD);
+    }
+
+    @Benchmark
+    public double gama() {
+        return MichellStructure.gama(ne, Fixtures.H, Fixtures.L);
+    }
+
+    @Benchmark
+    public Truss generate() {
+        return MichellStructure.generate(ne, Fixtures.H, Fixtures.L, gama);
+    }
+
+    @Benchmark
+    public float analyze() {
+        MichellStructure.analyze(truss);
+        return truss.sigmaFL();
+    }
+
+    @Benchmark
+    public MichellResult solve() {
+        return MichellStructure.solve(ne, Fixtures.H, Fixtures.L, 0, MichellStructure.LOAD);
+    }
+
+    @Benchmark
+    public double update() {
+        float L = Fixtures.L + 0.01f*(updates++ & 1);  // alternate between two close spans
+        return MichellStructure.update(updated, Fixtures.H, L, 0, MichellStructure.LOAD);
+    }
+
+}
@@ -0,0 +1,81 @@
+package mit4s48.benchmarks;
+
+/*************************************************************************
+ *  Compilation:  mvn package
+ *  Execution:    java -jar target/benchmarks.jar RenderBenchmark
+ *  Dependencies: Truss.java  processing.core  org.openjdk.jmh
+ *
+ *  One frame of the application's drawing of a solved Michell truss with
+ *  ne bars, into an offscreen canvas of the application's size: members
+ *  and nodes, members colored by force, and the force labels.
+ *  Needs a display (see Fixtures.canvas).
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.concurrent.TimeUnit;
+
+import mit4s48.Truss;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import processing.core.PApplet;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    static final int SCALE = 10;
+
+    @Param({"2", "18", "98", "800"})
+    public int ne;
+
+    private Truss truss;
+    private PApplet p5;
+
+    @Setup
+    public void setup() {
+        truss = Fixtures.michell(ne);
+        p5 = Fixtures.canvas(500, 700);
+    }
+
+    @Benchmark
+    public void draw() {
+        p5.g.beginDraw();
+        p5.background(255);
+        p5.translate(50, 350);
+        truss.draw(p5, true, SCALE);
+        p5.g.endDraw();
+    }
+
+    @Benchmark
+    public void drawForceColors() {
+        p5.g.beginDraw();
+        p5.background(255);
+        p5.translate(50, 350);
+        truss.drawForceColors(p5, true, SCALE);
+        p5.g.endDraw();
+    }
+
+    @Benchmark
+    public void drawForces() {
+        p5.g.beginDraw();
+        p5.background(255);
+        p5.translate(50, 350);
+        truss.drawForces(p5, SCALE);
+        p5.g.endDraw();
+    }
+
+}
@@ -0,0 +1,91 @@
+package mit4s48.benchmarks;
+
+/*************************************************************************
+ *  Compilation:  mvn package
+ *  Execution:    java -jar target/benchmarks.jar TrussBenchmark
+ *  Dependencies: Truss.java  TrussGraph.java  org.openjdk.jmh
+ *
+ *  Per-truss operations on a solved Michell truss with ne bars: the
+ *  performance computation, building the element views (from scratch and
+ *  when already built), and traversing the topology through the boxing
+ *  adjacency iterator and through the compressed arrays.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import mit4s48.Truss;
+import mit4s48.TrussElement;
+import mit4s48.TrussGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrussBenchmark {
+
+    @Param({"2", "18", "98", "800", "5000"})
+    public int ne;
+
+    private Truss truss;
+    private TrussGraph graph;
+
+    @Setup
+    public void setup() {
+        truss = Fixtures.michell(ne);
+        graph = truss.topology();
+    }
+
+    @Benchmark
+    public float computePerformance() {
+        truss.computePerformance();
+        return truss.sigmaFL();
+    }
+
+    @Benchmark
+    public ArrayList<TrussElement> elements() {
+        truss.setGeometry(truss.geometry());  // drops the element views
+        return truss.elements();
+    }
+
+    @Benchmark
+    public ArrayList<TrussElement> elementsCached() {
+        return truss.elements();
+    }
+
+    @Benchmark
+    public int graphAdjacency() {
+        int sum = 0;
+        for (int v=0; v<graph.N(); v++) {
+            for (int w: graph.adj(v)) sum += w;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int graphCompressed() {
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        int sum = 0;
+        for (int v=0; v<graph.N(); v++) {
+            for (int e=offsets[v]; e<offsets[v+1]; e++) sum += targets[e];
+        }
+        return sum;
+    }
+
+}
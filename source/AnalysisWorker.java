@@ -0,0 +1,208 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac AnalysisWorker.java
+ *  Execution:    java AnalysisWorker
+ *  Dependencies: ResultCache.java  MichellResult.java  MichellStructure.java
+ *
+ *  Generation and analysis of Michell trusses on a background thread, so
+ *  that the animation thread of the interactive tool never waits for the
+ *  solver. Requests are submitted with the parameters of a truss and the
+ *  latest one wins: a request that has not started when a newer one
+ *  arrives is dropped, and so is a running request, at its next
+ *  checkpoint (each step of the gama search, and before the topology
+ *  build and the analysis; see MichellStructure.solve), so the newest
+ *  request never waits behind a whole obsolete solve. A request that
+ *  finishes after a newer one was submitted (within its analysis) is not
+ *  published, but its result still goes into the cache, so coming back
+ *  to it is free.
+ *
+ *  The last published result is an immutable snapshot (see MichellResult)
+ *  held in an atomic reference: the animation thread reads it once at the
+ *  start of each frame and draws it, while the worker swaps in the next
+ *  one.
+ *
+ *  A failed request (no gama satisfies L) publishes nothing; its error is
+ *  kept until the next request succeeds.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AnalysisWorker {
+
+    private final ResultCache cache_;
+    private final Thread thread_;
+    private final AtomicReference<MichellResult> snapshot_ = new AtomicReference<MichellResult>();
+    private volatile RuntimeException error_;   // error of the last request, null if it succeeded
+
+    // guarded by this
+    private Request pending_;        // latest request not started yet, null if none
+    private long submitted_;         // number of the latest request
+    private long running_;           // number of the running request, 0 if idle
+    private boolean closed_;
+    private long published_, dropped_, discarded_;
+
+    /**
+     *  Starts a worker that solves trusses through the given cache.
+     */
+    public AnalysisWorker(final ResultCache cache) {
+        cache_ = cache;
+        thread_ = new Thread(new Runnable() {
+            public void run() {  work();  }
+        }, "michell-analysis");
+        thread_.setDaemon(true);
+        thread_.start();
+    }
+
+    /**
+     *  Requests the Michell truss for the given parameters and tip load,
+     *  replacing any request that has not started yet.
+     *
+     *  @return the number of the request
+     *  @throws IllegalStateException if the worker is closed
+     */
+    public synchronized long submit(int ne, float h, float L, float Qx, float Qy) {
+        if (closed_) throw new IllegalStateException("Worker is closed");
+        if (pending_ != null) dropped_++;
+        pending_ = new Request(++submitted_, ne, h, L, Qx, Qy);
+        notifyAll();
+        return submitted_;
+    }
+
+    /**
+     *  The last published result, or null if none yet. Does not block.
+     */
+    public MichellResult snapshot() {
+        return snapshot_.get();
+    }
+
+    /**
+     *  Waits until every submitted request is done or dropped, or until the
+     *  timeout elapses.
+     *
+     *  @return true if the worker is idle
+     */
+    public synchronized boolean await(long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        while (pending_ != null || running_ != 0) {
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0) return false;
+            wait(wait);
+        }
+        return true;
+    }
+
+    /**
+     *  Stops the worker; the running request is cancelled at its next
+     *  checkpoint and pending requests are dropped.
+     */
+    public void close() {
+        synchronized (this) {
+            closed_ = true;
+            pending_ = null;
+            notifyAll();
+        }
+    }
+
+    // G E T T E R S
+    public RuntimeException  error() {  return error_;  }
+    public synchronized boolean busy() {  return pending_ != null || running_ != 0;  }
+    public synchronized long published() {  return published_;  }   // results swapped in
+    public synchronized long   dropped() {  return dropped_;  }     // replaced before starting or cancelled
+    public synchronized long discarded() {  return discarded_;  }   // finished after a newer request
+
+    private void work() {
+        while (true) {
+            Request request;
+            synchronized (this) {
+                while (pending_ == null && !closed_) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed_) return;
+                request = pending_;
+                pending_ = null;
+                running_ = request.id;
+            }
+
+            final long id = request.id;
+            MichellStructure.Checkpoint checkpoint = new MichellStructure.Checkpoint() {
+                public void check() {
+                    if (stale(id)) throw new Cancelled();
+                }
+            };
+            MichellResult result = null;
+            RuntimeException error = null;
+            boolean cancelled = false;
+            try {
+                result = cache_.get(request.ne, request.h, request.L, request.Qx, request.Qy, checkpoint);
+            } catch (Cancelled e) {
+                cancelled = true;
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            synchronized (this) {
+                running_ = 0;
+                if (cancelled) {
+                    dropped_++;
+                } else if (request.id != submitted_) {
+                    discarded_++;
+                } else if (error != null) {
+                    error_ = error;
+                } else {
+                    snapshot_.set(result);
+                    error_ = null;
+                    published_++;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    // true if a newer request was submitted after request id, or the
+    // worker was closed
+    private synchronized boolean stale(long id) {
+        return id != submitted_ || closed_;
+    }
+
+    /**
+     *  Thrown at a checkpoint to cancel a stale request.
+     */
+    private static final class Cancelled extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Cancelled() {
+            super(null, null, false, false);  // no stack trace
+        }
+    }
+
+    /**
+     *  Parameters of a submitted request.
+     */
+    private static final class Request {
+        private final long id;
+        private final int ne;
+        private final float h, L, Qx, Qy;
+
+        Request(long id, int ne, float h, float L, float Qx, float Qy) {
+            this.id = id;
+            this.ne = ne;
+            this.h = h;
+            this.L = L;
+            this.Qx = Qx;
+            this.Qy = Qy;
+        }
+    }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
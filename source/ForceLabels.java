@@ -0,0 +1,86 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac ForceLabels.java
+ *  Execution:    java ForceLabels
+ *  Dependencies: TrussElement.java  Misc.java  Jama.Matrix
+ *                processing.core.PApplet  processing.core.PFont
+ *
+ *  The force labels of a truss as a render layer: the text of each
+ *  member force and its position (the midpoint of the member, scaled)
+ *  are computed once for given forces and drawing scale, so that drawing
+ *  them on each frame only sets the text style once and places the
+ *  cached strings.
+ *
+ *  A layer belongs to one analysis: Truss.drawForces builds a new one
+ *  when the forces, the geometry or the scale change.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.ArrayList;
+
+import Jama.Matrix;
+import processing.core.PApplet;
+import processing.core.PFont;
+
+public class ForceLabels {
+
+    public static final String FONT = "Times";  // created at FONT_SIZE, drawn at TEXT_SIZE
+    public static final int FONT_SIZE = 14;
+    public static final int TEXT_SIZE = 10;
+    public static final int COLOR = 255;
+
+    private final Matrix F_;         // forces the labels were made from
+    private final int scale_;        // drawing scale
+    private final String[] text_;    // label of each element
+    private final float[] x_, y_;    // label positions
+
+    /**
+     *  Computes the labels of the given elements, with element e carrying
+     *  force F(e,0), drawn at the given scale.
+     */
+    public ForceLabels(final ArrayList<TrussElement> elements, final Matrix F, int scale) {
+        int E = elements.size();
+        F_ = F;
+        scale_ = scale;
+        text_ = new String[E];
+        x_ = new float[E];
+        y_ = new float[E];
+        for (int i=0; i<E; i++) {
+            TrussElement te = elements.get(i);
+            float f = (float) F.get(i, 0);
+            text_[i] = String.valueOf((int)f) + " kN";
+            x_[i] = (int)((float)(te.fromX()+te.toX())/2*scale);
+            y_[i] = (int)((float)(te.fromY()+te.toY())/2*scale);
+        }
+    }
+
+    // G E T T E R S
+    public int      size() {  return text_.length;  }
+    public String text(int e) {  return text_[e];  }
+
+    /**
+     *  True if these labels were made from forces F at the given scale.
+     */
+    public boolean matches(final Matrix F, int scale) {
+        return F == F_ && scale == scale_;
+    }
+
+    /**
+     *  Draws the labels centered at their positions.
+     */
+    public void draw(PApplet p5) {
+        PFont font = Misc.font(p5, FONT, FONT_SIZE);
+        p5.textAlign(PApplet.CENTER);
+        p5.textFont(font, TEXT_SIZE);
+        p5.fill(COLOR);
+        for (int i=0; i<text_.length; i++) p5.text(text_[i], x_[i], y_[i]);
+    }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
@@ -0,0 +1,436 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac GroundStructure.java
+ *  Execution:    java GroundStructure
+ *  Dependencies: TrussGeometry.java  TrussGraph.java  Truss.java
+ *                Simplex.java  Jama.Matrix
+ *
+ *  Ground-structure layout optimization. Given a set of nodes, supports
+ *  and loads, the candidate members are all the bars between two nodes
+ *  (on a grid, only those that do not pass through a third node), and
+ *  the optimum layout is the solution of the plastic minimum-volume
+ *  problem
+ *
+ *      minimize Sum l_e*|f_e|  subject to  Sum f_e*a_e = -Q at free DOFs
+ *
+ *  which is sigmaFL, with a_e the column of element e in the force
+ *  projection matrix of StructuralAnalysis. The problem is a linear
+ *  program in the tension and compression parts of every force, solved
+ *  with the built-in revised simplex method (Simplex).
+ *
+ *  Since a ground structure may have hundreds of thousands of candidate
+ *  members, the program is solved by member adding (column generation,
+ *  as in Gilbert, M., Tyas, A. "Layout optimization of large-scale
+ *  pin-jointed frames," Engineering Computations, 20 (8), 2003): starting
+ *  from the members between neighboring nodes, each round solves the
+ *  program on the active members, then scans all candidates with the
+ *  duals (the virtual displacements u of the nodes) and adds those whose
+ *  virtual strain |u'*a_e|/l_e exceeds 1, most violated first. The scan
+ *  stores nothing, so memory grows with the active members only. When no
+ *  candidate is violated, the layout is optimal for the whole ground
+ *  structure.
+ *
+ *  The result is a Truss of the members that carry force, with its
+ *  forces, reactions and performance set from the program. It is in
+ *  general statically indeterminate, so it is not meant to be analyzed
+ *  again with the method of joints.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import Jama.Matrix;
+
+public class GroundStructure {
+
+    private static final double VIOLATION = 1e-4;  // virtual strain above 1 that adds a member
+    private static final double ZERO_FORCE = 1e-9; // forces below this times the largest are dropped
+
+    private final TrussGeometry nodes_;
+    private final int[] S_;          // support definition
+    private final double[] Q_;       // load vector
+    private final int gridX_, gridY_; // grid divisions, 0 if the nodes are not a grid
+
+    private int maxRounds_ = 100;
+    private int maxAdded_ = 0;       // members added per round, 0 for automatic
+    private long maxPivots_ = 10000000;
+
+    // statistics of the last optimize
+    private int rounds_, members_;
+    private long candidates_, pivots_;
+    private boolean optimal_;
+
+    /**
+     *  Initializes a ground structure with all the bars between the given
+     *  nodes as candidates, under supports S and load vector Q (in the
+     *  formats of Truss.analyze).
+     */
+    public GroundStructure(final TrussGeometry nodes, final int[] S, final double[] Q) {
+        this(nodes, S, Q, 0, 0);
+    }
+
+    private GroundStructure(final TrussGeometry nodes, final int[] S, final double[] Q, int gridX, int gridY) {
+        if (Q.length != 2*nodes.numNodes())
+            throw new IllegalArgumentException("Load vector must have one entry per DOF");
+        nodes_ = nodes;
+        S_ = S.clone();
+        Q_ = Q.clone();
+        gridX_ = gridX;
+        gridY_ = gridY;
+    }
+
+    /**
+     *  Ground structure for the Michell problem: a grid of nx by ny
+     *  divisions over the rectangle from x = 0 to x = L and y = -height/2
+     *  to y = height/2, with the supports at the grid nodes nearest to
+     *  (0, h/2) and (0, -h/2), fixed in X and Y, and the point load
+     *  (Qx, Qy) at the grid node nearest to (L, 0). Use an even ny, and
+     *  divisions that put h/2 on the grid, for the exact positions.
+     *
+     *  @throws IllegalArgumentException unless nx, ny >= 1 and height >= h
+     */
+    public static GroundStructure michell(float h, float L, float height, int nx, int ny, float Qx, float Qy) {
+        if (nx < 1 || ny < 1) throw new IllegalArgumentException("Grid divisions must be positive");
+        if (!(height >= h)) throw new IllegalArgumentException("Grid must contain the supports");
+        TrussGeometry nodes = new TrussGeometry((nx+1)*(ny+1));
+        for (int i=0; i<=nx; i++) {
+            for (int j=0; j<=ny; j++) {
+                nodes.set(i*(ny+1)+j, (double)L*i/nx, -height/2.0 + (double)height*j/ny);
+            }
+        }
+        int top = (int)Math.round((height/2.0 + h/2.0)/height*ny);
+        int bottom = (int)Math.round((height/2.0 - h/2.0)/height*ny);
+        int tip = nx*(ny+1) + (int)Math.round(ny/2.0);
+        int[] S = {top, 1, top, 2, bottom, 1, bottom, 2};
+        double[] Q = new double[2*nodes.numNodes()];
+        Q[2*tip]   = Qx;
+        Q[2*tip+1] = Qy;
+        return new GroundStructure(nodes, S, Q, nx, ny);
+    }
+
+    // S E T T E R S
+    public void setMaxRounds(int maxRounds) {
+        if (maxRounds < 1) throw new IllegalArgumentException("Maximum rounds must be at least 1");
+        maxRounds_ = maxRounds;
+    }
+    public void setMaxAdded(int maxAdded) {
+        if (maxAdded < 0) throw new IllegalArgumentException("Maximum members added must be nonnegative");
+        maxAdded_ = maxAdded;
+    }
+    public void setMaxPivots(long maxPivots) {
+        if (maxPivots <= 0) throw new IllegalArgumentException("Maximum pivots must be positive");
+        maxPivots_ = maxPivots;
+    }
+
+    // G E T T E R S
+    public TrussGeometry nodes() {  return nodes_;  }
+    public int          rounds() {  return rounds_;  }
+    public int         members() {  return members_;  }
+    public long     candidates() {  return candidates_;  }
+    public long         pivots() {  return pivots_;  }
+    public boolean   isOptimal() {  return optimal_;  }  // false if the round limit stopped the last optimize
+
+    /**
+     *  Computes the optimum layout by member adding, in at most the
+     *  maximum number of rounds. If candidates are still violated after
+     *  the last round, the layout is the optimum of the members added so
+     *  far, not of the whole ground structure, and isOptimal is false.
+     *
+     *  @return the optimum truss (see isOptimal), with forces, reactions
+     *          and performance set
+     *  @throws IllegalArgumentException if the load cannot be carried by
+     *          the members between neighboring nodes
+     *  @throws IllegalStateException if the pivot budget is exhausted
+     */
+    public Truss optimize() {
+        int N = nodes_.numNodes();
+        double[] xy = nodes_.coordinates();
+
+        // rows of the program: the free DOFs
+        int[] row = new int[2*N];
+        for (int i=0; i<S_.length; i+=2) row[2*S_[i] + S_[i+1]-1] = -1;
+        int m = 0;
+        for (int d=0; d<2*N; d++) row[d] = (row[d] < 0) ? -1 : m++;
+        double[] b = new double[m];
+        for (int d=0; d<2*N; d++) if (row[d] >= 0) b[row[d]] = -Q_[d];
+        Simplex lp = new Simplex(b);
+
+        // members: active pairs, in the order of their (tension, compression) columns
+        int[] from = new int[64], to = new int[64];
+        int count = 0;
+        HashSet<Long> active = new HashSet<Long>();
+        int[] rows = new int[4];
+        double[] vals = new double[4];
+        double[] neg = new double[4];
+
+        // initial members: between neighbors
+        double near = neighborDistance(xy);
+        long scanned = 0;
+        for (int i=0; i<N; i++) {
+            for (int j=i+1; j<N; j++) {
+                if (!candidate(i, j)) continue;
+                scanned++;
+                if (length(xy, i, j) > near) continue;
+                if (count == from.length) {
+                    from = Arrays.copyOf(from, 2*count);
+                    to = Arrays.copyOf(to, 2*count);
+                }
+                from[count] = i;
+                to[count++] = j;
+                active.add(key(i, j, N));
+                addMember(lp, xy, row, i, j, rows, vals, neg);
+            }
+        }
+        candidates_ = scanned;
+
+        // member adding
+        int rounds = 0;
+        boolean optimal = false;
+        while (true) {
+            int status = lp.solve(maxPivots_ - lp.pivots());
+            if (status == Simplex.INFEASIBLE)
+                throw new IllegalArgumentException("The load cannot be carried by the ground structure");
+            if (status != Simplex.OPTIMAL)
+                throw new IllegalStateException("Pivot budget exhausted");
+            rounds++;
+
+            // virtual displacements of the DOFs
+            double[] y = lp.duals();
+            double[] u = new double[2*N];
+            for (int d=0; d<2*N; d++) u[d] = (row[d] < 0) ? 0 : y[row[d]];
+
+            // most violated candidates, in a min-heap on the strain
+            int limit = (maxAdded_ > 0) ? maxAdded_ : Math.max(100, count/10);
+            double[] heapStrain = new double[limit];
+            long[] heapKey = new long[limit];
+            int size = 0;
+            for (int i=0; i<N; i++) {
+                for (int j=i+1; j<N; j++) {
+                    if (!candidate(i, j)) continue;
+                    double dx = xy[2*j]   - xy[2*i];
+                    double dy = xy[2*j+1] - xy[2*i+1];
+                    double l = Math.sqrt(dx*dx + dy*dy);
+                    double strain = Math.abs((u[2*i]-u[2*j])*dx + (u[2*i+1]-u[2*j+1])*dy)/(l*l);
+                    if (strain <= 1 + VIOLATION) continue;
+                    if (size == limit && strain <= heapStrain[0]) continue;
+                    long k = key(i, j, N);
+                    if (active.contains(k)) continue;
+                    if (size < limit) {
+                        heapStrain[size] = strain;
+                        heapKey[size] = k;
+                        siftUp(heapStrain, heapKey, size++);
+                    } else {
+                        heapStrain[0] = strain;
+                        heapKey[0] = k;
+                        siftDown(heapStrain, heapKey, size);
+                    }
+                }
+            }
+            if (size == 0) {  // optimal for the whole ground structure
+                optimal = true;
+                break;
+            }
+            if (rounds == maxRounds_) break;
+
+            for (int h=0; h<size; h++) {
+                int i = (int)(heapKey[h]/N);
+                int j = (int)(heapKey[h]%N);
+                if (count == from.length) {
+                    from = Arrays.copyOf(from, 2*count);
+                    to = Arrays.copyOf(to, 2*count);
+                }
+                from[count] = i;
+                to[count++] = j;
+                active.add(heapKey[h]);
+                addMember(lp, xy, row, i, j, rows, vals, neg);
+            }
+        }
+        rounds_ = rounds;
+        optimal_ = optimal;
+        members_ = count;
+        pivots_ = lp.pivots();
+
+        // member forces: tension minus compression
+        double[] z = lp.values();
+        double[] force = new double[count];
+        double maxForce = 0;
+        for (int e=0; e<count; e++) {
+            force[e] = z[2*e] - z[2*e+1];
+            maxForce = Math.max(maxForce, Math.abs(force[e]));
+        }
+        return truss(from, to, force, count, ZERO_FORCE*maxForce);
+    }
+
+    // builds the truss of the members with |force| > threshold
+    private Truss truss(int[] from, int[] to, double[] force, int count, double threshold) {
+        int N = nodes_.numNodes();
+        double[] xy = nodes_.coordinates();
+
+        // keep the loaded and supported nodes and the nodes of the kept members
+        int[] index = new int[N];
+        Arrays.fill(index, -1);
+        for (int i=0; i<S_.length; i+=2) index[S_[i]] = 0;
+        for (int d=0; d<Q_.length; d++) if (Q_[d] != 0) index[d/2] = 0;
+        int[] start = new int[N+1];  // kept members by start node, counting sort
+        for (int e=0; e<count; e++) {
+            if (Math.abs(force[e]) <= threshold) continue;
+            index[from[e]] = 0;
+            index[to[e]] = 0;
+            start[from[e]+1]++;
+        }
+        int NN = 0;
+        for (int v=0; v<N; v++) if (index[v] == 0) index[v] = NN++;
+        for (int v=0; v<N; v++) start[v+1] += start[v];
+        int E = start[N];
+        int[] order = new int[E];
+        int[] next = Arrays.copyOf(start, N);
+        for (int e=0; e<count; e++) {
+            if (Math.abs(force[e]) > threshold) order[next[from[e]]++] = e;
+        }
+
+        TrussGeometry geometry = new TrussGeometry(NN);
+        for (int v=0; v<N; v++) {
+            if (index[v] >= 0) geometry.set(index[v], xy[2*v], xy[2*v+1]);
+        }
+        TrussGraph graph = new TrussGraph(NN);
+        Matrix F = new Matrix(E, 1);
+        double[] residual = Q_.clone();  // Q + Sum f_e*a_e, balanced by the reactions
+        for (int k=0; k<E; k++) {
+            int e = order[k];
+            int i = from[e], j = to[e];
+            graph.addEdge(index[i], index[j]);
+            F.set(k, 0, force[e]);
+            double l = length(xy, i, j);
+            double c = (xy[2*j]-xy[2*i])/l, s = (xy[2*j+1]-xy[2*i+1])/l;
+            residual[2*i]   += force[e]*c;
+            residual[2*i+1] += force[e]*s;
+            residual[2*j]   -= force[e]*c;
+            residual[2*j+1] -= force[e]*s;
+        }
+        graph.freeze();
+
+        int nFixities = S_.length/2;
+        Matrix R = new Matrix(nFixities, 1);  // in the order of the supports
+        for (int f=0; f<nFixities; f++) {
+            R.set(f, 0, -residual[2*S_[2*f] + S_[2*f+1]-1]);
+        }
+
+        Truss truss = new Truss(geometry, graph);
+        truss.setForces(F);
+        truss.setRForces(R);
+        truss.computePerformance();
+        return truss;
+    }
+
+    // adds the tension and compression columns of member i-j
+    private static void addMember(Simplex lp, double[] xy, int[] row, int i, int j,
+                                  int[] rows, double[] vals, double[] neg) {
+        double l = length(xy, i, j);
+        double c = (xy[2*j]-xy[2*i])/l, s = (xy[2*j+1]-xy[2*i+1])/l;
+        int[] dof = {2*i, 2*i+1, 2*j, 2*j+1};
+        double[] a = {c, s, -c, -s};
+        int nnz = 0;
+        for (int k=0; k<4; k++) {
+            if (row[dof[k]] < 0 || a[k] == 0) continue;
+            rows[nnz] = row[dof[k]];
+            vals[nnz] = a[k];
+            neg[nnz++] = -a[k];
+        }
+        lp.addColumn(Arrays.copyOf(rows, nnz), Arrays.copyOf(vals, nnz), l);
+        lp.addColumn(Arrays.copyOf(rows, nnz), Arrays.copyOf(neg, nnz), l);
+    }
+
+    // true if the bar i-j is a candidate: on a grid, it must not pass
+    // through another grid node
+    private boolean candidate(int i, int j) {
+        if (gridX_ == 0) return true;
+        int di = Math.abs(i/(gridY_+1) - j/(gridY_+1));
+        int dj = Math.abs(i%(gridY_+1) - j%(gridY_+1));
+        return gcd(di, dj) == 1;
+    }
+
+    // distance within which nodes are connected initially: the largest
+    // distance from a node to its nearest node, times 1.5 (on a grid,
+    // the horizontal, vertical and diagonal neighbors). On a grid it is
+    // the smaller spacing, read from the first nodes of a column and a row
+    private double neighborDistance(double[] xy) {
+        if (gridX_ > 0) return 1.5*Math.min(length(xy, 0, gridY_+1), length(xy, 0, 1));
+        int N = xy.length/2;
+        double largest = 0;
+        for (int i=0; i<N; i++) {
+            double nearest = Double.POSITIVE_INFINITY;
+            for (int j=0; j<N; j++) {
+                if (j != i) nearest = Math.min(nearest, length(xy, i, j));
+            }
+            largest = Math.max(largest, nearest);
+        }
+        return 1.5*largest;
+    }
+
+    private static double length(double[] xy, int i, int j) {
+        double dx = xy[2*j]   - xy[2*i];
+        double dy = xy[2*j+1] - xy[2*i+1];
+        return Math.sqrt(dx*dx + dy*dy);
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a%b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private static long key(int i, int j, int N) {
+        return (long)i*N + j;
+    }
+
+    private static void siftUp(double[] strain, long[] key, int k) {
+        while (k > 0) {
+            int parent = (k-1)/2;
+            if (strain[parent] <= strain[k]) break;
+            swap(strain, key, parent, k);
+            k = parent;
+        }
+    }
+
+    private static void siftDown(double[] strain, long[] key, int size) {
+        int k = 0;
+        while (2*k+1 < size) {
+            int c = 2*k+1;
+            if (c+1 < size && strain[c+1] < strain[c]) c++;
+            if (strain[k] <= strain[c]) break;
+            swap(strain, key, k, c);
+            k = c;
+        }
+    }
+
+    private static void swap(double[] strain, long[] key, int a, int b) {
+        double s = strain[a]; strain[a] = strain[b]; strain[b] = s;
+        long k = key[a]; key[a] = key[b]; key[b] = k;
+    }
+
+    /**
+     *  Test client and sample execution: optimum layouts of the Michell
+     *  problem (h = 8, L = 40, vertical tip load) on grids of increasing
+     *  size, compared with the discrete Michell trusses.
+     */
+    public static void main(String[] args) {
+        int[][] grids = {{10, 4}, {20, 8}, {40, 16}};
+        for (int[] grid: grids) {
+            long start = System.nanoTime();
+            GroundStructure gs = michell(8, 40, 16, grid[0], grid[1], 0, MichellStructure.LOAD);
+            Truss truss = gs.optimize();
+            System.out.printf("grid %dx%d: %d candidates, %d members active, %d in the layout, %d rounds, %d pivots, sigmaFL %.2f%s (%.0f ms)%n",
+                              grid[0], grid[1], gs.candidates(), gs.members(), truss.numElements(), gs.rounds(),
+                              gs.pivots(), truss.sigmaFL(), gs.isOptimal() ? "" : " (round limit)",
+                              (System.nanoTime()-start)/1e6);
+        }
+        System.out.println("discrete Michell, ne = 98: sigmaFL " + MichellStructure.solve(98, 8, 40, 0, MichellStructure.LOAD).sigmaFL());
+    }
+
+}
@@ -0,0 +1,150 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac JointFactorization.java
+ *  Execution:    java JointFactorization
+ *  Dependencies: StructuralAnalysis.java  SparseMatrix.java  SparseLU.java
+ *                Metrics.java  Jama.Matrix
+ *
+ *  The factorized system of the method of joints for a fixed geometry,
+ *  topology and support definition. The force projection matrix A is
+ *  built and decomposed once; each load case afterwards costs only a
+ *  forward and a backward substitution.
+ *
+ *  Load cases can be solved one by one from a load definition (same
+ *  format as the L input of StructuralAnalysis.JointMethod), or in a
+ *  batch from a (number of DOFs)-by-(number of cases) load matrix Q.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import Jama.Matrix;
+
+public class JointFactorization {
+
+    private final SparseLU lu_;   // decomposition of the force projection matrix
+    private final int nElements_; // number of elements
+    private final int nFixities_; // number of fixities
+    private final int dofs_;      // number of DOFs
+
+    /**
+     *  Builds and factors the force projection matrix of the truss.
+     *  Inputs N, T and S as in StructuralAnalysis.JointMethod.
+     *
+     *  @throws IllegalArgumentException if the truss is indeterminate
+     *  @throws RuntimeException if the truss is a mechanism (A is singular)
+     */
+    public JointFactorization(Matrix N, Matrix T, Matrix S) {
+        this(StructuralAnalysis.projectionMatrix(N, T, S), T.getRowDimension(), S.getRowDimension());
+    }
+
+    /**
+     *  Builds and factors the force projection matrix of the truss from
+     *  primitive inputs: node coordinates xy, element end nodes from/to and
+     *  fixities S, as in StructuralAnalysis.SparseJointMethod.
+     *
+     *  @throws IllegalArgumentException if the truss is indeterminate
+     *  @throws RuntimeException if the truss is a mechanism (A is singular)
+     */
+    public JointFactorization(double[] xy, int[] from, int[] to, int[] S) {
+        this(StructuralAnalysis.projectionMatrix(xy, from, to, S), from.length, S.length/2);
+    }
+
+    private JointFactorization(SparseMatrix A, int nElements, int nFixities) {
+        long start = Metrics.start();
+        lu_ = new SparseLU(A);
+        Metrics.SOLVE.stop(start);
+        nElements_ = nElements;
+        nFixities_ = nFixities;
+        dofs_ = A.rows();
+    }
+
+    // G E T T E R S
+    public int numElements() {  return nElements_;  }
+    public int numFixities() {  return nFixities_;  }
+    public int        dofs() {  return dofs_;  }
+
+    /**
+     *  Solves a single load case.
+     *
+     *  @param L = load definition
+     *        (number of loaded nodes)-by-3 matrix with L(n,0) the index of a loaded
+     *        node and L(n,1) and L(n,2) the loads applied to that node in the X and
+     *        Y directions
+     *  @return array 2x1 containing the element forces F and support reactions R,
+     *        as returned by StructuralAnalysis.JointMethod
+     */
+    public Matrix[] solve(Matrix L) {
+        return StructuralAnalysis.splitForces(solveVector(StructuralAnalysis.loadVector(L, dofs_)), nElements_);
+    }
+
+    /**
+     *  Solves a batch of load cases.
+     *
+     *  @param Q = load cases
+     *        (number of DOFs)-by-(number of cases) matrix with Q(2n,c) and Q(2n+1,c)
+     *        the loads applied to node n in the X and Y directions in case c
+     *  @return array 2x1 containing two Jama Matricies:
+     *        0: F = element forces
+     *           (number of elements)-by-(number of cases) matrix
+     *        1: R = support reactions
+     *           (number of fixities)-by-(number of cases) matrix
+     */
+    public Matrix[] solveAll(Matrix Q) {
+        if (Q.getRowDimension() != dofs_)
+            throw new IllegalArgumentException("Load matrix must have one row per DOF");
+        int nCases = Q.getColumnDimension();
+        Matrix F = new Matrix(nElements_, nCases);
+        Matrix R = new Matrix(nFixities_, nCases);
+        double[][] q = Q.getArray();
+        double[] b = new double[dofs_];
+        for (int c=0; c<nCases; c++) {
+            for (int i=0; i<dofs_; i++) b[i] = q[i][c];
+            double[] x = solveVector(b);
+            for (int i=0; i<nElements_; i++) F.set(i, c, x[i]);
+            for (int i=0; i<nFixities_; i++) R.set(i, c, x[nElements_+i]);
+        }
+        Matrix[] out = new Matrix[2];
+        out[0] = F;
+        out[1] = R;
+        return out;
+    }
+
+    /**
+     *  Builds the batched load matrix for solveAll from a list of load
+     *  definitions, one per case.
+     */
+    public Matrix loadCases(Matrix[] L) {
+        Matrix Q = new Matrix(dofs_, L.length);
+        for (int c=0; c<L.length; c++) {
+            double[] q = StructuralAnalysis.loadVector(L[c], dofs_);
+            for (int i=0; i<dofs_; i++) Q.set(i, c, q[i]);
+        }
+        return Q;
+    }
+
+    /**
+     *  Solves A*x = -Q for a load vector Q of length dofs, where x holds
+     *  the element forces followed by the support reactions.
+     */
+    public double[] solveVector(final double[] Q) {
+        double[] b = new double[dofs_];
+        for (int i=0; i<dofs_; i++) b[i] = -Q[i];
+        return lu_.solve(b);
+    }
+
+    /**
+     *  Solves the adjoint system A'*lambda = g with the same decomposition,
+     *  for sensitivities of a function of the forces (see
+     *  StructuralAnalysis.sigmaFLGradient).
+     */
+    public double[] solveTransposeVector(final double[] g) {
+        return lu_.solveTranspose(g);
+    }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
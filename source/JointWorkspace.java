@@ -0,0 +1,266 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac JointWorkspace.java
+ *  Execution:    java JointWorkspace
+ *  Dependencies: StructuralAnalysis.java  SparseMatrix.java  SparseLU.java
+ *                Metrics.java
+ *
+ *  Reusable buffers for the method of joints on a truss with a given
+ *  number of nodes, elements and fixities: the compressed-column arrays
+ *  of the force projection matrix A, its sparse LU decomposition and the
+ *  right-hand side.
+ *
+ *  The first analysis factors A and sizes the factors. Later analyses
+ *  with the same topology and supports (only coordinates and loads
+ *  change) assemble A in place and refactor it in the same storage, so
+ *  they allocate nothing. If the topology or supports change, A is
+ *  factored anew.
+ *
+ *  For re-analysis after small node movements, update starts from the
+ *  previous solution instead: it recomputes only the columns of A whose
+ *  element moved, and corrects the previous solution by iterative
+ *  refinement with the existing decomposition. Each refinement step costs
+ *  one multiplication by A and one pair of triangular solves, far less
+ *  than a factorization; the matrix is refactored (in the same storage)
+ *  only when refinement does not converge quickly.
+ *
+ *  A workspace is not safe for use by several threads at once; give each
+ *  thread its own.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.Arrays;
+
+public class JointWorkspace {
+
+    private final int nNodes_;       // number of nodes
+    private final int nElements_;    // number of elements
+    private final int nFixities_;    // number of fixities
+    private final int[] colPtr_;     // force projection matrix A (compressed columns)
+    private final int[] rowIdx_;
+    private final double[] values_;
+    private final SparseMatrix A_;   // view of the arrays above
+    private final double[] b_;       // right-hand side -Q
+    private final double[] xy_;      // coordinates A was assembled from
+    private final double[] r_, d_;   // residual and correction of update
+    private SparseLU lu_;            // decomposition of A, null before the first analysis
+    private boolean stale_;          // lu_ decomposes an earlier A
+    private long factorizations_, refinements_;
+
+    /** Relative residual at which refinement stops. */
+    static final double REFINE_TOL = 1e-13;
+    /** Maximum number of refinement steps before refactoring. */
+    static final int MAX_REFINEMENTS = 8;
+
+    /**
+     *  Initializes a workspace for trusses with the given numbers of
+     *  nodes, elements and fixities.
+     *
+     *  @throws IllegalArgumentException if the truss is indeterminate
+     */
+    public JointWorkspace(int nNodes, int nElements, int nFixities) {
+        if (2*nNodes != nElements+nFixities)
+            throw new IllegalArgumentException("The truss is indeterminate");
+        nNodes_ = nNodes;
+        nElements_ = nElements;
+        nFixities_ = nFixities;
+        int dofs = 2*nNodes;
+        colPtr_ = new int[dofs+1];
+        rowIdx_ = new int[4*nElements+nFixities];
+        values_ = new double[4*nElements+nFixities];
+        Arrays.fill(rowIdx_, -1);  // no pattern yet
+        A_ = new SparseMatrix(dofs, dofs, colPtr_, rowIdx_, values_);
+        b_ = new double[dofs];
+        xy_ = new double[dofs];
+        r_ = new double[dofs];
+        d_ = new double[dofs];
+    }
+
+    // G E T T E R S
+    public int    numNodes() {  return nNodes_;  }
+    public int numElements() {  return nElements_;  }
+    public int numFixities() {  return nFixities_;  }
+    public int        dofs() {  return 2*nNodes_;  }
+
+    /** Number of numerical factorizations, and of analyses solved by refinement alone. */
+    public long factorizations() {  return factorizations_;  }
+    public long    refinements() {  return refinements_;  }
+
+    /**
+     *  Solves the method of joints for the truss with node coordinates xy,
+     *  topology from/to, supports S and load vector Q (in the formats of
+     *  StructuralAnalysis.SparseJointMethod), writing the element forces
+     *  followed by the support reactions into x.
+     *
+     *  @return x
+     *  @throws IllegalArgumentException if the inputs do not match the
+     *          sizes of the workspace
+     *  @throws RuntimeException if the truss is a mechanism (A is singular)
+     */
+    public double[] solve(double[] xy, int[] from, int[] to, int[] S, double[] Q, double[] x) {
+        check(xy, from, to, S, Q, x);
+        boolean changed = StructuralAnalysis.assemble(xy, from, to, S, colPtr_, rowIdx_, values_);
+        System.arraycopy(xy, 0, xy_, 0, xy.length);
+        long start = Metrics.start();
+        factor(changed);
+        for (int i=0; i<b_.length; i++) b_[i] = -Q[i];
+        lu_.solve(b_, x);
+        Metrics.SOLVE.stop(start);
+        return x;
+    }
+
+    /**
+     *  Re-solves the method of joints after the node coordinates (or the
+     *  loads) changed, starting from the previous solution held in x.
+     *  Inputs as in solve. Falls back to solve on the first analysis or if
+     *  the topology or supports changed.
+     *
+     *  @return x, overwritten with the new solution
+     *  @throws RuntimeException if the truss is a mechanism (A is singular)
+     */
+    public double[] update(double[] xy, int[] from, int[] to, int[] S, double[] Q, double[] x) {
+        check(xy, from, to, S, Q, x);
+        if (lu_ == null || !samePattern(from, to, S))
+            return solve(xy, from, to, S, Q, x);
+
+        // recompute the columns of the elements with a moved end node
+        long start = Metrics.start();
+        int moved = 0;
+        for (int i=0; i<nElements_; i++) {
+            int n1 = from[i];
+            int n2 = to[i];
+            if (xy[2*n1] == xy_[2*n1] && xy[2*n1+1] == xy_[2*n1+1]
+                && xy[2*n2] == xy_[2*n2] && xy[2*n2+1] == xy_[2*n2+1]) continue;
+            double dx = xy[2*n2]   - xy[2*n1];
+            double dy = xy[2*n2+1] - xy[2*n1+1];
+            double dist = Math.sqrt(dx*dx + dy*dy);
+            double cosa = dx/dist;
+            double sina = dy/dist;
+            int p = colPtr_[i];
+            values_[p]   = cosa;
+            values_[p+1] = sina;
+            values_[p+2] = -cosa;
+            values_[p+3] = -sina;
+            moved++;
+        }
+        System.arraycopy(xy, 0, xy_, 0, xy.length);
+        Metrics.ASSEMBLY.stop(start);
+        start = Metrics.start();
+        stale_ |= moved > 0;
+        for (int i=0; i<b_.length; i++) b_[i] = -Q[i];
+        if (!stale_) {
+            lu_.solve(b_, x);
+        } else if (refine(b_, x, false)) {
+            refinements_++;
+        } else {
+            factor(false);
+            lu_.solve(b_, x);
+        }
+        Metrics.SOLVE.stop(start);
+        return x;
+    }
+
+    /**
+     *  Solves the adjoint system A'*lambda = g for the matrix of the last
+     *  analysis (solve or update), with the same decomposition: one pair of
+     *  triangular solves, plus refinement steps if the last analysis was
+     *  solved by refinement.
+     *
+     *  @return lambda
+     *  @throws IllegalStateException if nothing has been analyzed yet
+     */
+    public double[] solveTranspose(double[] g, double[] lambda) {
+        if (lu_ == null) throw new IllegalStateException("No analysis to solve the adjoint of");
+        if (g.length != b_.length || lambda.length != b_.length)
+            throw new IllegalArgumentException("Inputs do not match the workspace");
+        lu_.solveTranspose(g, lambda);
+        if (!stale_ || refine(g, lambda, true)) return lambda;
+        factor(false);
+        return lu_.solveTranspose(g, lambda);
+    }
+
+    // iterative refinement of A*x = b (or A'*x = b): x += LU\(b - A*x) with the
+    // earlier decomposition; true if it converged
+    private boolean refine(double[] b, double[] x, boolean transpose) {
+        double bnorm = norm(b);
+        double previous = Double.POSITIVE_INFINITY;
+        for (int iter=0; iter<=MAX_REFINEMENTS; iter++) {
+            residual(b, x, transpose);
+            double rnorm = norm(r_);
+            if (rnorm <= REFINE_TOL*(bnorm + norm(x))) return true;
+            if (iter == MAX_REFINEMENTS || !(rnorm < 0.5*previous)) return false;  // too slow or diverging
+            previous = rnorm;
+            if (transpose) lu_.solveTranspose(r_, d_);
+            else lu_.solve(r_, d_);
+            for (int i=0; i<x.length; i++) x[i] += d_[i];
+        }
+        return false;
+    }
+
+    // factors A_, anew if the pattern changed
+    private void factor(boolean changed) {
+        if (changed || lu_ == null) {
+            lu_ = null;
+            lu_ = new SparseLU(A_);
+        } else {
+            try {
+                lu_.refactor(A_);
+            } catch (RuntimeException e) {
+                lu_ = null;  // the factors are incomplete
+                throw e;
+            }
+        }
+        stale_ = false;
+        factorizations_++;
+    }
+
+    // true if from, to and S give the pattern held in rowIdx_
+    private boolean samePattern(int[] from, int[] to, int[] S) {
+        for (int i=0; i<nElements_; i++) {
+            int p = colPtr_[i];
+            if (rowIdx_[p] != 2*from[i] || rowIdx_[p+2] != 2*to[i]) return false;
+        }
+        for (int i=0; i<nFixities_; i++) {
+            if (S[2*i+1] != 1 && S[2*i+1] != 2) return false;
+            int row = (S[2*i+1] == 1) ? 2*S[2*i] : 2*S[2*i]+1;
+            if (rowIdx_[colPtr_[nElements_+i]] != row) return false;
+        }
+        return true;
+    }
+
+    // r_ = b - A*x, or b - A'*x
+    private void residual(double[] b, double[] x, boolean transpose) {
+        System.arraycopy(b, 0, r_, 0, b.length);
+        for (int j=0; j<x.length; j++) {
+            if (transpose) {
+                double rj = r_[j];
+                for (int p=colPtr_[j]; p<colPtr_[j+1]; p++) rj -= values_[p]*x[rowIdx_[p]];
+                r_[j] = rj;
+            } else {
+                double xj = x[j];
+                for (int p=colPtr_[j]; p<colPtr_[j+1]; p++) r_[rowIdx_[p]] -= values_[p]*xj;
+            }
+        }
+    }
+
+    private static double norm(double[] v) {
+        double max = 0;
+        for (int i=0; i<v.length; i++) max = Math.max(max, Math.abs(v[i]));
+        return max;
+    }
+
+    private void check(double[] xy, int[] from, int[] to, int[] S, double[] Q, double[] x) {
+        int dofs = 2*nNodes_;
+        if (xy.length != dofs || from.length != nElements_ || to.length != nElements_
+            || S.length != 2*nFixities_ || Q.length != dofs || x.length != dofs)
+            throw new IllegalArgumentException("Inputs do not match the workspace");
+    }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
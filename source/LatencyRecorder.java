@@ -0,0 +1,129 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac LatencyRecorder.java
+ *  Execution:    java LatencyRecorder
+ *  Dependencies: Metrics.java
+ *
+ *  Latency histogram in the style of HdrHistogram: values (in
+ *  nanoseconds) are counted in log-linear buckets, exact below 128 and
+ *  with 64 buckets per power of two above, so that every percentile is
+ *  within 1/64 (about 1.6%) of the recorded value. The buckets are a
+ *  fixed array of atomic counters: recording allocates nothing, takes no
+ *  lock and is safe from any number of threads.
+ *
+ *  Reads (percentiles, counts) are not atomic with respect to concurrent
+ *  records; they may miss the records in progress.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyRecorder {
+
+    static final int SUB_BITS = 6;                       // 64 buckets per power of two
+    static final int SUB = 1 << SUB_BITS;
+    static final int BUCKETS = (64 - SUB_BITS) * SUB;    // enough for any long
+
+    private final String name_;
+    private final AtomicLongArray counts_ = new AtomicLongArray(BUCKETS);
+    private final LongAdder count_ = new LongAdder();
+    private final LongAdder total_ = new LongAdder();    // sum of the values
+    private final AtomicLong max_ = new AtomicLong();
+
+    public LatencyRecorder(String name) {
+        name_ = name;
+    }
+
+    // G E T T E R S
+    public String name() {  return name_;  }
+    public long  count() {  return count_.sum();  }
+    public long    max() {  return max_.get();  }    // nanoseconds
+
+    /** Mean value in nanoseconds, 0 if nothing was recorded. */
+    public double mean() {
+        long n = count_.sum();
+        return (n == 0) ? 0 : (double)total_.sum()/n;
+    }
+
+    /**
+     *  Records a value in nanoseconds (negative values count as 0).
+     */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts_.incrementAndGet(bucket(v));
+        count_.increment();
+        total_.add(v);
+        long max = max_.get();
+        while (v > max && !max_.compareAndSet(max, v)) max = max_.get();
+    }
+
+    /**
+     *  Records the time since start (a value of Metrics.start) if metrics
+     *  are enabled; does nothing otherwise.
+     */
+    public void stop(long start) {
+        if (Metrics.ENABLED) record(System.nanoTime() - start);
+    }
+
+    /**
+     *  Value in nanoseconds at the given percentile (0 to 100): the
+     *  highest value of the bucket that holds it, 0 if nothing was
+     *  recorded.
+     */
+    public long percentile(double p) {
+        long total = 0;
+        for (int i=0; i<BUCKETS; i++) total += counts_.get(i);
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long)Math.ceil(Math.min(100, Math.max(0, p))/100*total));
+        long seen = 0;
+        for (int i=0; i<BUCKETS; i++) {
+            seen += counts_.get(i);
+            if (seen >= rank) return Math.min(highest(i), max_.get());
+        }
+        return max_.get();
+    }
+
+    /**
+     *  Clears the histogram.
+     */
+    public void reset() {
+        for (int i=0; i<BUCKETS; i++) counts_.set(i, 0);
+        count_.reset();
+        total_.reset();
+        max_.set(0);
+    }
+
+    // bucket of value v >= 0
+    static int bucket(long v) {
+        if (v < 2*SUB) return (int)v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;  // v >>> shift in [SUB, 2*SUB)
+        return shift*SUB + (int)(v >>> shift);
+    }
+
+    // highest value of bucket i
+    static long highest(int i) {
+        if (i < 2*SUB) return i;
+        int shift = i/SUB - 1;
+        long m = i%SUB + SUB;
+        return ((m+1) << shift) - 1;
+    }
+
+    /**
+     *  One line summary, in milliseconds.
+     */
+    public String toString() {
+        return String.format("%-12s %10d  mean %9.3f  p50 %9.3f  p90 %9.3f  p99 %9.3f  max %9.3f ms",
+                             name_, count(), mean()/1e6, percentile(50)/1e6, percentile(90)/1e6,
+                             percentile(99)/1e6, max()/1e6);
+    }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
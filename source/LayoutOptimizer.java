@@ -0,0 +1,269 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac LayoutOptimizer.java
+ *  Execution:    java LayoutOptimizer
+ *  Dependencies: Truss.java  TrussTopology.java  LayoutResult.java
+ *                MichellStructure.java  Jama.Matrix
+ *
+ *  Layout optimization of a truss with a fixed topology: moves the free
+ *  nodes to minimize sigmaFL = Sum |f_e|*l_e under fixed supports and
+ *  loads. Supported and loaded nodes stay in place; every other node is
+ *  free in X and Y.
+ *
+ *  The search is a limited-memory BFGS method with a backtracking
+ *  (Armijo) line search. Each evaluation is one Truss.analyze, which is
+ *  incremental since only coordinates change, and one adjoint solve for
+ *  the gradient (Truss.sigmaFLGradient), so large trusses can be
+ *  optimized within a small budget. Layouts where the truss becomes a
+ *  mechanism or an element vanishes are rejected by the line search.
+ *
+ *  The run stops when the relative decrease of sigmaFL in an iteration,
+ *  or the largest gradient component scaled by the size of the truss,
+ *  falls below the tolerance, or when the iteration or time budget is
+ *  used up. The result tracks sigmaFL and the gradient at each iteration.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import Jama.Matrix;
+
+public class LayoutOptimizer {
+
+    private static final int MEMORY = 8;             // correction pairs kept by L-BFGS
+    private static final double ARMIJO = 1e-4;       // sufficient decrease constant
+    private static final int MAX_BACKTRACKS = 40;
+
+    private final int[] S_;        // support definition
+    private final double[] Q_;     // load vector
+    private int maxIterations_ = 200;
+    private long timeBudget_ = Long.MAX_VALUE;  // nanoseconds
+    private double tolerance_ = 1e-9;
+
+    /**
+     *  Initializes an optimizer for the given supports and loads, in the
+     *  formats of Truss.analyze.
+     */
+    public LayoutOptimizer(final int[] S, final double[] Q) {
+        S_ = S.clone();
+        Q_ = Q.clone();
+    }
+
+    // S E T T E R S
+    public void setMaxIterations(int maxIterations) {
+        if (maxIterations < 0) throw new IllegalArgumentException("Iteration budget must be nonnegative");
+        maxIterations_ = maxIterations;
+    }
+    public void setTimeBudget(long millis) {
+        if (millis <= 0) throw new IllegalArgumentException("Time budget must be positive");
+        timeBudget_ = (millis > Long.MAX_VALUE/1000000) ? Long.MAX_VALUE : millis*1000000;
+    }
+    public void setTolerance(double tolerance) {
+        if (!(tolerance >= 0)) throw new IllegalArgumentException("Tolerance must be nonnegative");
+        tolerance_ = tolerance;
+    }
+
+    /**
+     *  Optimizes the layout of the truss in place: on return its nodes are
+     *  at the best layout found, and its forces, reactions and performance
+     *  are those of that layout.
+     *
+     *  @throws IllegalArgumentException if the loads do not match the truss
+     *  @throws RuntimeException if the starting layout is a mechanism
+     */
+    public LayoutResult optimize(Truss truss) {
+        long start = System.nanoTime();
+        double[] xy = truss.geometry().coordinates();
+        if (Q_.length != xy.length)
+            throw new IllegalArgumentException("Load vector must have one entry per DOF");
+        TrussTopology topology = new TrussTopology(truss.topology());
+        int[] free = freeCoordinates(xy.length/2);
+        int n = free.length;
+        double scale = size(xy);
+
+        double[] sigmaFL = new double[maxIterations_+1];
+        double[] gnorm = new double[maxIterations_+1];
+        double[] x = new double[n], g = new double[n];
+        double[] xt = new double[n], gt = new double[n];
+        double[] d = new double[n];
+        double[] sn = new double[n], yn = new double[n];  // new correction pair, until accepted
+        double[][] s = new double[MEMORY][n], y = new double[MEMORY][n];
+        double[] rho = new double[MEMORY], alpha = new double[MEMORY];
+        int pairs = 0, newest = -1;
+
+        for (int i=0; i<n; i++) x[i] = xy[free[i]];
+        double f = evaluate(truss, topology, free, g);
+        if (Double.isInfinite(f))
+            throw new IllegalArgumentException("The starting layout cannot be analyzed");
+        int evaluations = 1;
+        sigmaFL[0] = f;
+        gnorm[0] = norm(g);
+
+        int k = 0;
+        int status = LayoutResult.MAX_ITERATIONS;
+        if (n == 0 || gnorm[0]*scale <= tolerance_*f) status = LayoutResult.CONVERGED;
+        while (status == LayoutResult.MAX_ITERATIONS && k < maxIterations_) {
+            if (System.nanoTime()-start >= timeBudget_) {
+                status = LayoutResult.TIME_BUDGET;
+                break;
+            }
+
+            // d = -H*g by the two-loop recursion
+            for (int i=0; i<n; i++) d[i] = -g[i];
+            for (int j=0, m=newest; j<pairs; j++, m=(m+MEMORY-1)%MEMORY) {
+                alpha[m] = rho[m]*dot(s[m], d);
+                axpy(-alpha[m], y[m], d);
+            }
+            double gamma = 1;
+            if (pairs > 0) gamma = dot(s[newest], y[newest])/dot(y[newest], y[newest]);
+            else gamma = 0.01*scale/gnorm[k];  // first step moves the nodes by 1% of the size
+            for (int i=0; i<n; i++) d[i] *= gamma;
+            for (int j=0, m=(newest-pairs+1+MEMORY)%MEMORY; j<pairs; j++, m=(m+1)%MEMORY) {
+                double beta = rho[m]*dot(y[m], d);
+                axpy(alpha[m]-beta, s[m], d);
+            }
+            double slope = dot(g, d);
+            if (!(slope < 0)) {  // not a descent direction: restart from steepest descent
+                pairs = 0;
+                for (int i=0; i<n; i++) d[i] = -0.01*scale/gnorm[k]*g[i];
+                slope = dot(g, d);
+            }
+
+            // backtracking line search
+            double t = 1, ft = Double.POSITIVE_INFINITY;
+            boolean accepted = false;
+            for (int b=0; b<MAX_BACKTRACKS; b++) {
+                for (int i=0; i<n; i++) {
+                    xt[i] = x[i] + t*d[i];
+                    xy[free[i]] = xt[i];
+                }
+                ft = evaluate(truss, topology, free, gt);
+                evaluations++;
+                if (ft <= f + ARMIJO*t*slope) {
+                    accepted = true;
+                    break;
+                }
+                t *= 0.5;
+            }
+            if (!accepted) {
+                for (int i=0; i<n; i++) xy[free[i]] = x[i];
+                evaluate(truss, topology, free, g);  // restore the analysis of the best layout
+                evaluations++;
+                status = LayoutResult.LINE_SEARCH;
+                break;
+            }
+
+            // keep the correction pair if it has positive curvature; only
+            // then it replaces the oldest pair
+            double sy = 0;
+            for (int i=0; i<n; i++) {
+                sn[i] = xt[i]-x[i];
+                yn[i] = gt[i]-g[i];
+                sy += sn[i]*yn[i];
+            }
+            if (sy > 1e-12*Math.sqrt(dot(sn, sn)*dot(yn, yn))) {
+                newest = (newest+1)%MEMORY;
+                System.arraycopy(sn, 0, s[newest], 0, n);
+                System.arraycopy(yn, 0, y[newest], 0, n);
+                rho[newest] = 1/sy;
+                pairs = Math.min(pairs+1, MEMORY);
+            }
+
+            double decrease = f - ft;
+            System.arraycopy(xt, 0, x, 0, n);
+            System.arraycopy(gt, 0, g, 0, n);
+            f = ft;
+            k++;
+            sigmaFL[k] = f;
+            gnorm[k] = norm(g);
+            if (decrease <= tolerance_*f || gnorm[k]*scale <= tolerance_*f) status = LayoutResult.CONVERGED;
+        }
+        return new LayoutResult(status, k, evaluations, System.nanoTime()-start, sigmaFL, gnorm);
+    }
+
+    // analyzes the truss at its current coordinates; returns sigmaFL (in
+    // double precision) and its gradient over the free coordinates, or
+    // +Infinity if the layout cannot be analyzed
+    private double evaluate(Truss truss, TrussTopology topology, int[] free, double[] g) {
+        try {
+            truss.analyze(S_, Q_);
+        } catch (RuntimeException e) {
+            return Double.POSITIVE_INFINITY;  // mechanism
+        }
+        TrussGeometry G = truss.geometry();
+        Matrix F = truss.forces();
+        double f = 0;
+        for (int e=0; e<topology.numElements(); e++) {
+            f += Math.abs(F.get(e, 0))*G.length(topology.from(e), topology.to(e));
+        }
+        if (Double.isNaN(f) || Double.isInfinite(f)) return Double.POSITIVE_INFINITY;
+        double[] grad = truss.sigmaFLGradient();
+        for (int i=0; i<free.length; i++) g[i] = grad[free[i]];
+        return f;
+    }
+
+    // coordinates of the nodes that are neither supported nor loaded
+    private int[] freeCoordinates(int nNodes) {
+        boolean[] fixed = new boolean[nNodes];
+        for (int i=0; i<S_.length; i+=2) fixed[S_[i]] = true;
+        for (int i=0; i<Q_.length; i++) {
+            if (Q_[i] != 0) fixed[i/2] = true;
+        }
+        int count = 0;
+        for (int v=0; v<nNodes; v++) if (!fixed[v]) count++;
+        int[] free = new int[2*count];
+        int c = 0;
+        for (int v=0; v<nNodes; v++) {
+            if (fixed[v]) continue;
+            free[c++] = 2*v;
+            free[c++] = 2*v+1;
+        }
+        return free;
+    }
+
+    // diagonal of the bounding box of the nodes
+    private static double size(double[] xy) {
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i=0; i<xy.length; i+=2) {
+            minX = Math.min(minX, xy[i]);   maxX = Math.max(maxX, xy[i]);
+            minY = Math.min(minY, xy[i+1]); maxY = Math.max(maxY, xy[i+1]);
+        }
+        return Math.max(Math.hypot(maxX-minX, maxY-minY), Double.MIN_NORMAL);
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int i=0; i<a.length; i++) sum += a[i]*b[i];
+        return sum;
+    }
+
+    // y += a*x
+    private static void axpy(double a, double[] x, double[] y) {
+        for (int i=0; i<x.length; i++) y[i] += a*x[i];
+    }
+
+    private static double norm(double[] v) {
+        double max = 0;
+        for (int i=0; i<v.length; i++) max = Math.max(max, Math.abs(v[i]));
+        return max;
+    }
+
+    /**
+     *  Test client and sample execution: optimizes the layout of Michell
+     *  trusses (h = 8, L = 40, standard tip load) and reports how far the
+     *  geometric solution is from the optimum found for its topology.
+     */
+    public static void main(String[] args) {
+        int[] S = {0, 1, 0, 2, 1, 1, 1, 2};
+        for (int ne: new int[]{8, 18, 32, 50, 72, 98, 800, 1800}) {
+            Truss truss = MichellStructure.generate(ne, 8, 40);
+            double[] Q = new double[2*truss.numNodes()];
+            Q[Q.length-1] = MichellStructure.LOAD;
+            LayoutOptimizer optimizer = new LayoutOptimizer(S, Q);
+            optimizer.setTimeBudget(10000);
+            System.out.println("ne = " + ne + ": " + optimizer.optimize(truss));
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac LayoutResult.java
+ *  Execution:    java LayoutResult
+ *  Dependencies: None
+ *
+ *  The outcome of a LayoutOptimizer run: why it stopped, the number of
+ *  iterations and analyses it took, the elapsed time, and the history of
+ *  sigmaFL and of the largest gradient component over the free
+ *  coordinates, one entry per iteration (entry 0 is the starting layout).
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+public class LayoutResult {
+
+    /** Stop reasons. */
+    public static final int CONVERGED      = 0;  // relative decrease or gradient below tolerance
+    public static final int MAX_ITERATIONS = 1;  // iteration budget used up
+    public static final int TIME_BUDGET    = 2;  // time budget used up
+    public static final int LINE_SEARCH    = 3;  // no step decreased sigmaFL
+
+    private final int status_;
+    private final int iterations_;
+    private final int evaluations_;
+    private final long nanos_;
+    private final double[] sigmaFL_;   // sigmaFL after each iteration
+    private final double[] gradient_;  // largest free gradient component after each iteration
+
+    LayoutResult(int status, int iterations, int evaluations, long nanos, double[] sigmaFL, double[] gradient) {
+        status_ = status;
+        iterations_ = iterations;
+        evaluations_ = evaluations;
+        nanos_ = nanos;
+        sigmaFL_ = sigmaFL;
+        gradient_ = gradient;
+    }
+
+    // G E T T E R S
+    public int             status() {  return status_;  }
+    public boolean      converged() {  return status_ == CONVERGED;  }
+    public int         iterations() {  return iterations_;  }
+    public int        evaluations() {  return evaluations_;  }
+    public long             nanos() {  return nanos_;  }
+    public double  initialSigmaFL() {  return sigmaFL_[0];  }
+    public double    finalSigmaFL() {  return sigmaFL_[iterations_];  }
+    public double   sigmaFL(int k) {  return sigmaFL_[k];  }
+    public double  gradient(int k) {  return gradient_[k];  }
+
+    /**
+     *  Relative improvement of sigmaFL over the starting layout.
+     */
+    public double improvement() {
+        return (initialSigmaFL() - finalSigmaFL())/initialSigmaFL();
+    }
+
+    public String toString() {
+        String[] reasons = {"converged", "iteration budget", "time budget", "line search failed"};
+        return String.format("%s after %d iterations (%d analyses, %.1f ms): sigmaFL %.6g -> %.6g (%.4f%%)",
+                             reasons[status_], iterations_, evaluations_, nanos_/1e6,
+                             initialSigmaFL(), finalSigmaFL(), 100*improvement());
+    }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
@@ -0,0 +1,206 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac Metrics.java
+ *  Execution:    java -Dmit4s48.metrics=true Metrics
+ *  Dependencies: LatencyRecorder.java  MetricsMBean.java  MichellStructure.java
+ *
+ *  Instrumentation of the generation, analysis and drawing hot paths:
+ *  latency recorders of the gama search, topology build, assembly of the
+ *  force projection matrix, solution of the system, computePerformance,
+ *  whole analyses and drawn frames, and counters of gama search
+ *  iterations and dropped frames.
+ *
+ *  Metrics are off unless the system property mit4s48.metrics is true.
+ *  ENABLED is a constant, so when it is false the JIT compiler removes
+ *  the probes altogether. A probe is
+ *
+ *      long start = Metrics.start();
+ *      ...
+ *      Metrics.SOLVE.stop(start);
+ *
+ *  When enabled, the metrics are registered as the MBean
+ *  mit4s48:type=Metrics (see MetricsMBean) and, if the system property
+ *  mit4s48.metrics.dump gives a period in seconds, dumped to standard
+ *  error at that period by a daemon thread.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class Metrics implements MetricsMBean {
+
+    /** True if the probes record anything. */
+    public static final boolean ENABLED = Boolean.getBoolean("mit4s48.metrics");
+
+    static final String NAME = "mit4s48:type=Metrics";
+
+    public static final LatencyRecorder GAMA_SEARCH = new LatencyRecorder("gama search");
+    public static final LatencyRecorder TOPOLOGY    = new LatencyRecorder("topology");
+    public static final LatencyRecorder ASSEMBLY    = new LatencyRecorder("assembly");
+    public static final LatencyRecorder SOLVE       = new LatencyRecorder("solve");
+    public static final LatencyRecorder PERFORMANCE = new LatencyRecorder("performance");
+    public static final LatencyRecorder ANALYSIS    = new LatencyRecorder("analysis");
+    public static final LatencyRecorder DRAW        = new LatencyRecorder("draw");
+
+    public static final LongAdder GAMA_ITERATIONS = new LongAdder();  // residual evaluations
+    public static final LongAdder FRAMES_DROPPED  = new LongAdder();
+
+    private static final LatencyRecorder[] RECORDERS = {
+        GAMA_SEARCH, TOPOLOGY, ASSEMBLY, SOLVE, PERFORMANCE, ANALYSIS, DRAW
+    };
+
+    private static volatile long lastFrame_;       // start of the previous frame
+    private static ScheduledExecutorService dumper_;
+
+    static {
+        if (ENABLED) {
+            register();
+            long period = Long.getLong("mit4s48.metrics.dump", 0);
+            if (period > 0) startDump(period);
+        }
+    }
+
+    private Metrics() {}
+
+    /**
+     *  Start time of a probe: System.nanoTime() if metrics are enabled,
+     *  0 otherwise.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     *  Ends the probe of a frame that started at start (a value of
+     *  start), for a target frame rate: records the draw time, and counts
+     *  as dropped the frames missed since the previous frame started.
+     */
+    public static void frame(long start, float targetFrameRate) {
+        if (!ENABLED) return;
+        DRAW.record(System.nanoTime() - start);
+        long previous = lastFrame_;
+        lastFrame_ = start;
+        if (previous == 0) return;
+        double budget = 1e9/targetFrameRate;
+        long missed = Math.round((start - previous)/budget) - 1;
+        if (missed > 0) FRAMES_DROPPED.add(missed);
+    }
+
+    /**
+     *  Registers the metrics as an MBean, once.
+     */
+    public static synchronized void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(NAME);
+            if (!server.isRegistered(name)) server.registerMBean(new Metrics(), name);
+        } catch (JMException e) {
+            System.err.println("Metrics not registered: " + e);
+        }
+    }
+
+    /**
+     *  Dumps the metrics to standard error every period seconds, from a
+     *  daemon thread, replacing an earlier dump schedule.
+     */
+    public static synchronized void startDump(long period) {
+        if (period <= 0) throw new IllegalArgumentException("Dump period must be positive");
+        stopDump();
+        dumper_ = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "metrics-dump");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        dumper_.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                System.err.print(text());
+            }
+        }, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     *  Stops the periodic dump, if any.
+     */
+    public static synchronized void stopDump() {
+        if (dumper_ != null) dumper_.shutdownNow();
+        dumper_ = null;
+    }
+
+    /**
+     *  All recorders and counters, one per line.
+     */
+    public static String text() {
+        StringBuilder s = new StringBuilder();
+        for (LatencyRecorder r : RECORDERS) s.append(r).append('\n');
+        s.append(String.format("%-12s %10d%n", "gama iters", GAMA_ITERATIONS.sum()));
+        s.append(String.format("%-12s %10d%n", "dropped", FRAMES_DROPPED.sum()));
+        return s.toString();
+    }
+
+    /**
+     *  Clears all recorders and counters.
+     */
+    public static void clear() {
+        for (LatencyRecorder r : RECORDERS) r.reset();
+        GAMA_ITERATIONS.reset();
+        FRAMES_DROPPED.reset();
+        lastFrame_ = 0;
+    }
+
+    private static double millis(long nanos) {  return nanos/1e6;  }
+
+    // M B E A N
+    public boolean isEnabled() {  return ENABLED;  }
+
+    public long   getAnalyses()              {  return ANALYSIS.count();  }
+    public double getAnalysisMeanMillis()    {  return ANALYSIS.mean()/1e6;  }
+    public double getAnalysisP99Millis()     {  return millis(ANALYSIS.percentile(99));  }
+    public double getAnalysisMaxMillis()     {  return millis(ANALYSIS.max());  }
+
+    public long   getGamaSearches()          {  return GAMA_SEARCH.count();  }
+    public long   getGamaIterations()        {  return GAMA_ITERATIONS.sum();  }
+    public double getGamaSearchP99Millis()   {  return millis(GAMA_SEARCH.percentile(99));  }
+    public long   getTopologyBuilds()        {  return TOPOLOGY.count();  }
+    public double getTopologyP99Millis()     {  return millis(TOPOLOGY.percentile(99));  }
+    public double getAssemblyP99Millis()     {  return millis(ASSEMBLY.percentile(99));  }
+    public double getSolveP99Millis()        {  return millis(SOLVE.percentile(99));  }
+    public double getPerformanceP99Millis()  {  return millis(PERFORMANCE.percentile(99));  }
+
+    public long   getFrames()                {  return DRAW.count();  }
+    public long   getFramesDropped()         {  return FRAMES_DROPPED.sum();  }
+    public double getDrawP99Millis()         {  return millis(DRAW.percentile(99));  }
+
+    public String dump()  {  return text();  }
+    public void  reset()  {  clear();  }
+
+    /**
+     *  Test client and sample execution: solves Michell trusses of
+     *  several sizes and prints the metrics (run with metrics enabled).
+     */
+    public static void main(String[] args) {
+        if (!ENABLED) {
+            System.out.println("Run with -Dmit4s48.metrics=true");
+            return;
+        }
+        for (int k=0; k<20; k++) {
+            for (int na=1; na<=20; na++) {
+                MichellStructure.solve(2*na*na, 8, 40, 0, MichellStructure.LOAD);
+            }
+        }
+        System.out.print(text());
+    }
+
+}
@@ -0,0 +1,42 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac MetricsMBean.java
+ *  Execution:    java MetricsMBean
+ *  Dependencies: Metrics.java
+ *
+ *  JMX management interface of Metrics, registered as
+ *  mit4s48:type=Metrics. Latencies are in milliseconds.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+public interface MetricsMBean {
+
+    boolean isEnabled();
+
+    long   getAnalyses();
+    double getAnalysisMeanMillis();
+    double getAnalysisP99Millis();
+    double getAnalysisMaxMillis();
+
+    long   getGamaSearches();
+    long   getGamaIterations();
+    double getGamaSearchP99Millis();
+    long   getTopologyBuilds();
+    double getTopologyP99Millis();
+    double getAssemblyP99Millis();
+    double getSolveP99Millis();
+    double getPerformanceP99Millis();
+
+    long   getFrames();
+    long   getFramesDropped();
+    double getDrawP99Millis();
+
+    /** All recorders and counters, one per line. */
+    String dump();
+
+    /** Clears all recorders and counters. */
+    void reset();
+
+}
@@ -0,0 +1,302 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac MichellGenerator.java
+ *  Execution:    java MichellGenerator
+ *  Dependencies: Truss.java  TrussGeometry.java  TrussGraph.java
+ *                MichellStructure.java  Metrics.java
+ *
+ *  Generator of Michell-type trusses with any number of levels n (2n^2
+ *  bars), supports at (0, hTop) and (0, -hBottom) that need not be
+ *  symmetric, and a tip load inclined by a given angle from the vertical.
+ *
+ *  The truss is the net of MichellStructure: node N(i,j), for i, j = 1..n,
+ *  hangs from N(i-1,j) by an "alpha" bar (from the top support A when
+ *  i = 1) and from N(i,j-1) by a "beta" bar (from the bottom support B
+ *  when j = 1). The supports thus carry fans of n bars, and the tip is
+ *  N(n,n). Nodes are numbered level by level as in MichellStructure
+ *  (level k holds N(k,k), then N(k,k+t) and N(k+t,k) for t = 1..n-k), so
+ *  that the topology is the same.
+ *
+ *  The geometry is a discrete Hencky net: the alpha and beta bars into
+ *  N(i,j) are at the angles a0 + (j-i)*kapa and b0 + (j-i)*kapa, where
+ *  b0 - a0 = gama is the angle between the two bars at the tip, kapa =
+ *  90 - gama the rotation of the bars from one node to the next along the
+ *  fans, and the pair (a0, b0) is centered on the direction normal to the
+ *  load. N(i,j) is the intersection of its two bars, so the whole net is
+ *  computed in one pass over the nodes, in O(nodes) time, into a
+ *  preallocated coordinate array. Under symmetric supports and a vertical
+ *  load the net is symmetric about the X axis, like the trusses of
+ *  MichellStructure, but its fans rotate evenly: it is a close variant of
+ *  that construction, not the same geometry.
+ *
+ *  gama is found by bisection so that the tip is at X = L; with
+ *  asymmetric supports or an inclined load, the tip is off the X axis.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+public class MichellGenerator {
+
+    /** Bracket of the gama search, in degrees. */
+    static final double GAMA_MIN = 1e-3;
+    static final double GAMA_MAX = 90;
+
+    private final int n_;            // number of levels
+    private final double hTop_;      // distance of support A above the X axis
+    private final double hBottom_;   // distance of support B below the X axis
+    private double loadAngle_;       // inclination of the load from the vertical (degrees, toward +X)
+    private double tolerance_ = MichellStructure.GAMA_TOL;
+
+    /**
+     *  Initializes a generator for trusses with the given number of levels
+     *  (2*levels^2 bars) and supports at (0, hTop) and (0, -hBottom).
+     *
+     *  @throws IllegalArgumentException unless levels >= 1, the supports
+     *          are distinct, and levels is small enough for int indices
+     */
+    public MichellGenerator(int levels, double hTop, double hBottom) {
+        if (levels < 1 || levels > 20000) throw new IllegalArgumentException("Number of levels must be from 1 to 20000");
+        if (!(hTop + hBottom > 0)) throw new IllegalArgumentException("Supports must be distinct");
+        n_ = levels;
+        hTop_ = hTop;
+        hBottom_ = hBottom;
+    }
+
+    // S E T T E R S
+    public void setLoadAngle(double degrees) {
+        if (!(Math.abs(degrees) < 90)) throw new IllegalArgumentException("Load angle must be within (-90, 90) degrees");
+        loadAngle_ = degrees;
+    }
+    public void setTolerance(double tolerance) {
+        if (!(tolerance > 0)) throw new IllegalArgumentException("Tolerance must be positive");
+        tolerance_ = tolerance;
+    }
+
+    // G E T T E R S
+    public int       levels() {  return n_;  }
+    public int     numNodes() {  return 2 + n_*n_;  }
+    public int  numElements() {  return 2*n_*n_;  }
+    public int          tip() {  return 1 + n_*n_;  }   // index of the loaded node
+    public double loadAngle() {  return loadAngle_;  }
+
+    /**
+     *  Support definition of the trusses: both supports fixed in X and Y
+     *  (in the format of Truss.analyze).
+     */
+    public int[] supports() {
+        return new int[]{0, 1, 0, 2, 1, 1, 1, 2};
+    }
+
+    /**
+     *  Load vector of a load of magnitude Q at the tip, inclined by the
+     *  load angle from the vertical (in the format of Truss.analyze).
+     */
+    public double[] loads(double Q) {
+        double[] q = new double[2*numNodes()];
+        q[2*tip()]   = Q*Math.sin(loadAngle_*MichellStructure.RAD);
+        q[2*tip()+1] = Q*Math.cos(loadAngle_*MichellStructure.RAD);
+        return q;
+    }
+
+    /**
+     *  Generates the truss whose tip is at X = L.
+     *
+     *  @throws IllegalArgumentException if no gama puts the tip at L
+     */
+    public Truss generate(double L) {
+        double gama = gama(L);
+        if (Double.isNaN(gama))
+            throw new IllegalArgumentException("No gama satisfies L = " + L + " for " + n_ + " levels");
+        return build(gama);
+    }
+
+    // generates the truss with the given gama
+    private Truss build(double gama) {
+        TrussGeometry nodes = new TrussGeometry(numNodes());
+        geometry(gama, nodes.coordinates());
+        return new Truss(nodes, topology(n_));
+    }
+
+    /**
+     *  Finds gama (in degrees) that puts the tip at X = L, by bisection on
+     *  log(X/L) to within the tolerance. The tip moves away from the
+     *  supports as gama decreases.
+     *
+     *  @return gama, or NaN if no gama in the search interval puts the tip at L
+     */
+    public double gama(double L) {
+        long start = Metrics.start();
+        double gama = bisect(L);
+        Metrics.GAMA_SEARCH.stop(start);
+        return gama;
+    }
+
+    // bisection of gama
+    private double bisect(double L) {
+        double a = GAMA_MIN, b = GAMA_MAX;
+        double fa = residual(L, a), fb = residual(L, b);
+        if (fa == 0) return a;
+        if (fb == 0) return b;
+        if (!(fa > 0) || !(fb < 0)) return Double.NaN;
+        while (b-a > tolerance_) {
+            double m = 0.5*(a+b);
+            double fm = residual(L, m);
+            if (fm == 0) return m;
+            if (fm > 0) a = m;
+            else b = m;
+        }
+        return 0.5*(a+b);
+    }
+
+    // log(X/L) of the tip for the given gama; +Infinity where the net overflows
+    private double residual(double L, double gama) {
+        if (Metrics.ENABLED) Metrics.GAMA_ITERATIONS.increment();
+        double x = tipX(gama);
+        if (Double.isNaN(x) || x == Double.POSITIVE_INFINITY) return Double.POSITIVE_INFINITY;
+        if (x <= 0) return Double.NEGATIVE_INFINITY;
+        return Math.log(x/L);
+    }
+
+    // X of the tip for the given gama, in O(n) memory
+    private double tipX(double gama) {
+        double[] row = new double[2*(n_+1)];  // N(i-1, j), then N(i, j), for j = 0..n
+        return net(gama, null, row);
+    }
+
+    /**
+     *  Computes the nodes of the truss for the given gama (in degrees) into
+     *  xy (x and y of each node, 2*numNodes values), in one pass.
+     *
+     *  @return the X coordinate of the tip
+     */
+    public double geometry(double gama, double[] xy) {
+        if (xy.length != 2*numNodes()) throw new IllegalArgumentException("Coordinate array must have 2*numNodes values");
+        return net(gama, xy, new double[2*(n_+1)]);
+    }
+
+    // sweeps the net row by row (i = 1..n), keeping row i-1 of the nodes in
+    // row; writes the nodes into xy unless it is null
+    private double net(double gama, double[] xy, double[] row) {
+        double kapa = 90-gama;
+        double normal = -loadAngle_;          // direction normal to the load
+        double a0 = (normal - gama/2)*MichellStructure.RAD;
+        double b0 = (normal + gama/2)*MichellStructure.RAD;
+        double k = kapa*MichellStructure.RAD;
+        if (xy != null) {
+            xy[0] = 0;  xy[1] = hTop_;
+            xy[2] = 0;  xy[3] = -hBottom_;
+        }
+
+        // row 0 is support A for every j
+        for (int j=1; j<=n_; j++) {
+            row[2*j] = 0;
+            row[2*j+1] = hTop_;
+        }
+        double x = 0, y = 0;
+        for (int i=1; i<=n_; i++) {
+            double px = 0, py = -hBottom_;    // N(i, j-1), support B for j = 1
+            for (int j=1; j<=n_; j++) {
+                double ax = row[2*j], ay = row[2*j+1];  // N(i-1, j)
+                double a = a0 + (j-i)*k;
+                double b = b0 + (j-i)*k;
+                double ux = Math.cos(a), uy = Math.sin(a);
+                double wx = Math.cos(b), wy = Math.sin(b);
+                // N = A + s*u = P + t*w
+                double s = ((px-ax)*wy - (py-ay)*wx)/(ux*wy - uy*wx);
+                x = ax + s*ux;
+                y = ay + s*uy;
+                row[2*j] = x;
+                row[2*j+1] = y;
+                if (xy != null) {
+                    int v = index(i, j);
+                    xy[2*v] = x;
+                    xy[2*v+1] = y;
+                }
+                px = x;
+                py = y;
+            }
+        }
+        return x;  // N(n, n)
+    }
+
+    // index of node N(i,j) in the numbering of MichellStructure
+    private int index(int i, int j) {
+        int m = Math.min(i, j);
+        int start = 2 + (m-1)*(2*n_ - m + 1);  // first node of level m: 2 + Sum_{l<m} (1 + 2(n-l))
+        if (i == j) return start;
+        return (j > i) ? start + 2*(j-i) - 1 : start + 2*(i-j);
+    }
+
+    /**
+     *  Builds the topology of the truss with n levels directly in CSR form
+     *  (frozen), in O(nodes) time: node A leads to N(1,j), node B to N(i,1)
+     *  and node N(i,j) to N(i+1,j) and N(i,j+1), each in increasing node
+     *  order. It is the topology of MichellStructure for ne = 2n^2 bars.
+     */
+    public static TrussGraph topology(int n) {
+        long start = Metrics.start();
+        MichellGenerator g = new MichellGenerator(n, 1, 1);
+        int N = g.numNodes();
+        int[] offsets = new int[N+1];
+        int[] targets = new int[2*n*n];
+        int e = 0;
+        offsets[0] = e;                                   // A
+        for (int j=1; j<=n; j++) targets[e++] = g.index(1, j);
+        offsets[1] = e;                                   // B
+        for (int i=1; i<=n; i++) targets[e++] = g.index(i, 1);
+        int v = 2;
+        for (int m=1; m<=n; m++) {                        // level m, in node order
+            offsets[v++] = e;
+            e = g.successors(m, m, targets, e);
+            for (int t=1; t<=n-m; t++) {
+                offsets[v++] = e;
+                e = g.successors(m, m+t, targets, e);
+                offsets[v++] = e;
+                e = g.successors(m+t, m, targets, e);
+            }
+        }
+        offsets[N] = e;
+        TrussGraph graph = new TrussGraph(offsets, targets);
+        Metrics.TOPOLOGY.stop(start);
+        return graph;
+    }
+
+    // writes the targets of N(i,j), N(i+1,j) and N(i,j+1), in increasing
+    // order from targets[e]; returns the next free position
+    private int successors(int i, int j, int[] targets, int e) {
+        int t1 = (i < n_) ? index(i+1, j) : -1;
+        int t2 = (j < n_) ? index(i, j+1) : -1;
+        if (t1 >= 0 && t2 >= 0 && t2 < t1) {
+            int t = t1;
+            t1 = t2;
+            t2 = t;
+        }
+        if (t1 >= 0) targets[e++] = t1;
+        if (t2 >= 0) targets[e++] = t2;
+        return e;
+    }
+
+    /**
+     *  Test client and sample execution: generates and analyzes symmetric
+     *  trusses of increasing size, then an asymmetric one under an
+     *  inclined load.
+     */
+    public static void main(String[] args) {
+        for (int n : new int[]{4, 16, 64}) {
+            long start = System.nanoTime();
+            MichellGenerator g = new MichellGenerator(n, 4, 4);
+            Truss truss = g.generate(40);
+            truss.analyze(g.supports(), g.loads(MichellStructure.LOAD));
+            System.out.printf("%d levels, %d bars: sigmaFL %.2f in %.0f ms%n", n, g.numElements(),
+                              truss.sigmaFL(), (System.nanoTime()-start)/1e6);
+        }
+        MichellGenerator g = new MichellGenerator(8, 6, 2);
+        g.setLoadAngle(20);
+        Truss truss = g.generate(40);
+        truss.analyze(g.supports(), g.loads(MichellStructure.LOAD));
+        System.out.printf("asymmetric, load at 20 degrees: sigmaFL %.2f, tip at (%.3f, %.3f)%n",
+                          truss.sigmaFL(), truss.geometry().x(g.tip()), truss.geometry().y(g.tip()));
+    }
+
+}
@@ -0,0 +1,64 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac MichellResult.java
+ *  Execution:    java MichellResult
+ *  Dependencies: Truss.java
+ *
+ *  A solved Michell truss together with the parameters it was generated
+ *  and analyzed with: number of bars ne, distance h between the supports,
+ *  distance L to the tip, tip load (Qx, Qy), and the optimized angle gama.
+ *
+ *  The truss holds the geometry, topology, element forces, reactions and
+ *  performance. It must be treated as read-only once wrapped in a result,
+ *  since results are shared through ResultCache.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+public class MichellResult {
+
+    private final int ne_;
+    private final float h_, L_;
+    private final float Qx_, Qy_;
+    private final double gama_;
+    private final Truss truss_;
+
+    public MichellResult(int ne, float h, float L, float Qx, float Qy, double gama, final Truss truss) {
+        ne_ = ne;
+        h_ = h;
+        L_ = L;
+        Qx_ = Qx;
+        Qy_ = Qy;
+        gama_ = gama;
+        truss_ = truss;
+    }
+
+    // G E T T E R S
+    public int        ne() {  return ne_;  }
+    public float       h() {  return h_;  }
+    public float       L() {  return L_;  }
+    public float      Qx() {  return Qx_;  }
+    public float      Qy() {  return Qy_;  }
+    public double   gama() {  return gama_;  }
+    public Truss   truss() {  return truss_;  }
+    public float sigmaFL() {  return truss_.sigmaFL();  }
+
+    /**
+     *  Rough estimate of the memory held by this result, in bytes: the
+     *  node coordinates and the force and reaction matrices (the topology
+     *  is shared and not counted).
+     */
+    public long bytes() {
+        long nodes = truss_.numNodes();
+        long forces = (truss_.forces() == null) ? 0 : truss_.forces().getRowDimension();
+        long reactions = (truss_.reactions() == null) ? 0 : truss_.reactions().getRowDimension();
+        return 128 + 16*nodes + 32*(forces + reactions);
+    }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
@@ -0,0 +1,451 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac MichellStructure.java
+ *  Execution:    java MichellStructure
+ *  Dependencies: Truss.java  TrussGeometry.java  TrussGraph.java
+ *                TrussTopology.java  TopologyCache.java  StructuralAnalysis.java
+ *                JointFactorization.java  MichellGenerator.java  MirrorSymmetry.java
+ *                Metrics.java  Jama.Matrix
+ *
+ *  Generation and analysis of discrete Michell trusses in their simple
+ *  symmetric form: two fixed supports at (0, h/2) and (0, -h/2) and a
+ *  vertical point load at (L, 0) on the symmetry axis. The geometric
+ *  solution follows Mazurek, A., Baker, W. F., Tort, C. "Geometrical
+ *  aspects of optimum truss like structures," Structural and
+ *  Multidisciplinary Optimization, 43 (2), 2011.
+ *
+ *  All methods are static and free of side effects: each call builds and
+ *  returns its own Truss, so they can be used headless (no PApplet) and
+ *  from several threads at once. The only shared state is a cache of the
+ *  (immutable) topologies, which depend on the number of bars alone.
+ *
+ *  A solve can be given a Checkpoint, which it calls before each step of
+ *  the gama search, before building the topology and before the
+ *  analysis; the checkpoint aborts a solve that is no longer wanted by
+ *  throwing.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import Jama.Matrix;
+
+public class MichellStructure {
+
+    static final double DSG_EPS = 1e-6;
+    static final double RAD = Math.PI/180;
+    static final double toDeg = 180/Math.PI;
+
+    /** Bracket of the gama search, in degrees. */
+    static final double GAMA_MIN = 89.0/300.0;
+    static final double GAMA_MAX = 89.0;
+
+    /** Default tolerance (degrees) and iteration cap of the gama search. */
+    public static final double GAMA_TOL = 1e-9;
+    public static final int MAX_ITERATIONS = 100;
+
+    /** Vertical point load applied at the tip of the structure. */
+    public static final float LOAD = 80;
+
+    /** Supports of the standard load case: nodes 0 and 1 fixed in X (1) and Y (2). */
+    private static final int[] SUPPORTS = {0, 1, 0, 2, 1, 1, 1, 2};
+
+    /** Topologies shared by all generated trusses, by number of levels. */
+    static final TopologyCache TOPOLOGIES = new TopologyCache(64, 4000000);
+
+    /**
+     *  Called by a solve between its steps.
+     */
+    public interface Checkpoint {
+        /** Throws (an unchecked exception) to abort the solve. */
+        void check();
+    }
+
+    /**
+     *  Generates the Michell truss with ne bars, distance h between the
+     *  supports and distance L between the supports and the point load.
+     *
+     *  @throws IllegalArgumentException if no gama satisfies L for ne and h
+     */
+    public static Truss generate(int ne, float h, float L) {
+        double gama = gama(ne, h, L);
+        if (Double.isNaN(gama))
+            throw new IllegalArgumentException("No gama satisfies L = " + L + " for ne = " + ne + " and h = " + h);
+        return generate(ne, h, L, gama);
+    }
+
+    /**
+     *  Generates the Michell truss with ne bars, distance h between the
+     *  supports and the given angle gama (in degrees). L is only used by
+     *  the two-bar truss, whose geometry does not depend on gama.
+     */
+    public static Truss generate(int ne, float h, float L, double gama) {
+        if (ne == 2) {
+            // build geometry
+            TrussGeometry nodes = new TrussGeometry(3);
+            nodes.set(0, 0, h/2); // 0
+            nodes.set(1, 0, -h/2); // 1
+            nodes.set(2, L, 0); // 2
+            return new Truss(nodes, topology(ne));
+        }
+        int na = (int)Math.sqrt(ne/2);
+        TrussGeometry nodes = new TrussGeometry(2 + na*na);
+        geometry(ne, h, gama, nodes);
+        return new Truss(nodes, topology(ne));
+    }
+
+    /**
+     *  Optimizes gama (in degrees) for L = Lp where Lp is the point
+     *  on x axis (symmetry axis) where the point load is applied
+     *  and which satisfies the verticality constraint (see geometry),
+     *  to within GAMA_TOL degrees.
+     *
+     *  @return gama, or NaN if no gama in the search interval satisfies L
+     */
+    public static double gama(int ne, float h, float L) {
+        return gama(ne, h, L, GAMA_TOL, MAX_ITERATIONS);
+    }
+
+    /**
+     *  Optimizes gama (in degrees) for L = Lp with Brent's method on the
+     *  residual log(Lp(gama)/L), bracketed by [89/300, 89] degrees. Lp
+     *  decreases monotonically with gama over the bracket (from very
+     *  large values, which may overflow, to about h), so the residual
+     *  changes sign exactly once when L is attainable. Only the geometry
+     *  is evaluated at each iteration; no nodes or topology are built.
+     *
+     *  @param tol  absolute tolerance on gama, in degrees
+     *  @param maxIterations  maximum number of residual evaluations; when
+     *         it is reached the best estimate so far is returned
+     *  @return gama, or NaN if no gama in the bracket satisfies L
+     */
+    public static double gama(int ne, float h, float L, double tol, int maxIterations) {
+        return gama(ne, h, L, tol, maxIterations, null);
+    }
+
+    // gama search that calls checkpoint (if not null) before each residual
+    private static double gama(int ne, float h, float L, double tol, int maxIterations, Checkpoint checkpoint) {
+        long start = Metrics.start();
+        double gama = brent(ne, h, L, tol, maxIterations, checkpoint);
+        Metrics.GAMA_SEARCH.stop(start);
+        return gama;
+    }
+
+    // Brent's method of gama
+    private static double brent(int ne, float h, float L, double tol, int maxIterations, Checkpoint checkpoint) {
+        if (ne == 2) return Math.atan((h/2)/L) * 2 * toDeg;
+
+        double a = GAMA_MIN, b = GAMA_MAX, c = b;
+        double fa = residual(ne, h, L, a, checkpoint);
+        double fb = residual(ne, h, L, b, checkpoint);
+        if (fa <= 0) return a;          // L is attained at the smallest gama already
+        if (!(fb <= 0)) return Double.NaN;  // L is shorter than the shortest truss
+        double fc = fb;
+        double d = b-a, e = d;
+        for (int iter=0; iter<maxIterations; iter++) {
+            if ((fb > 0 && fc > 0) || (fb < 0 && fc < 0)) {
+                c = a; fc = fa;
+                e = d = b-a;
+            }
+            if (Math.abs(fc) < Math.abs(fb)) {
+                a = b; b = c; c = a;
+                fa = fb; fb = fc; fc = fa;
+            }
+            double tol1 = 2*Math.ulp(1.0)*Math.abs(b) + 0.5*tol;
+            double xm = 0.5*(c-b);
+            if (Math.abs(xm) <= tol1 || fb == 0) return b;
+            boolean finite = !Double.isInfinite(fa) && !Double.isInfinite(fb) && !Double.isInfinite(fc);
+            if (finite && Math.abs(e) >= tol1 && Math.abs(fa) > Math.abs(fb)) {
+                // inverse quadratic interpolation, or secant when a == c
+                double p, q, r, s = fb/fa;
+                if (a == c) {
+                    p = 2*xm*s;
+                    q = 1-s;
+                } else {
+                    q = fa/fc;
+                    r = fb/fc;
+                    p = s*(2*xm*q*(q-r) - (b-a)*(r-1));
+                    q = (q-1)*(r-1)*(s-1);
+                }
+                if (p > 0) q = -q;
+                p = Math.abs(p);
+                if (2*p < Math.min(3*xm*q - Math.abs(tol1*q), Math.abs(e*q))) {
+                    e = d;        // accept interpolation
+                    d = p/q;
+                } else {
+                    d = xm;       // fall back to bisection
+                    e = d;
+                }
+            } else {
+                d = xm;           // bisection
+                e = d;
+            }
+            a = b;
+            fa = fb;
+            b += (Math.abs(d) > tol1) ? d : Math.copySign(tol1, xm);
+            fb = residual(ne, h, L, b, checkpoint);
+        }
+        return b;
+    }
+
+    // log(Lp/L) for the given gama; +Infinity where the geometry overflows
+    private static double residual(int ne, float h, float L, double gama, Checkpoint checkpoint) {
+        if (checkpoint != null) checkpoint.check();
+        if (Metrics.ENABLED) Metrics.GAMA_ITERATIONS.increment();
+        double Lp = geometry(ne, h, gama, null);
+        if (Double.isNaN(Lp) || Lp == Double.POSITIVE_INFINITY) return Double.POSITIVE_INFINITY;
+        if (Lp <= 0) return Double.NEGATIVE_INFINITY;
+        return Math.log(Lp/L);
+    }
+
+    /**
+     *  Computes the geometry of the Michell truss with ne bars, distance h
+     *  between the supports and angle gama (in degrees), and writes its
+     *  nodes into the given geometry, which must have 2 + na^2 nodes for na
+     *  levels. Pass null to compute Lp only, without writing any nodes.
+     *
+     *  @return Lp, the x coordinate of the tip node (the last node)
+     */
+    static double geometry(int ne, double h, double gama, TrussGeometry nodes) {
+        // support nodes
+        if (nodes != null) {
+            nodes.set(0, 0, h/2); // 0
+            nodes.set(1, 0, -h/2); // 1, symmetric (xx')
+        }
+        int n = 2;  // next node
+
+        // Michell structure standard angles
+        double kapa = 90-gama;
+        double lamda = 90-gama/2;
+
+        double Lp = DSG_EPS;
+
+        int na = (int)Math.sqrt(ne/2);
+        double prevX = 0, prevY = h/2;  // previous node
+        while (na > 0) {
+
+            double initAngle = lamda;
+            double lm = Math.tan( (90+initAngle)*RAD );
+
+            Lp = prevX-prevY/(lm+DSG_EPS);
+            if (nodes != null) nodes.set(n++, Lp, 0);
+
+            prevX = Lp;
+            prevY = 0;
+            double side_prev = prevY;
+            if (na>1) {
+                double current_thetam, previous_thetam = 0;
+                double strideX = 0, strideY = 0;  // first node of this stride
+                for (int i=0; i<na-1; i++) {
+
+                    double l2m = -1/(lm+DSG_EPS);
+                    double thetam = Math.atan( Math.abs(l2m) );
+                    current_thetam = Math.toDegrees(thetam);
+                    double bm = Math.sqrt(side_prev*side_prev+Lp*Lp);
+                    double mm = bm*Math.tan( kapa*RAD );
+
+                    // construct cartesian from polar given the angle
+                    double xm;
+                    if (current_thetam<previous_thetam) {  // flip along y axis
+                        xm = prevX - mm*Math.cos(thetam);
+                    } else {
+                        xm = prevX + mm*Math.cos(thetam);
+                    }
+                    double ym = prevY + mm*Math.sin(thetam);
+
+                    if (i == 0) {
+                        strideX = xm;
+                        strideY = ym;
+                    }
+                    if (nodes != null) {
+                        nodes.set(n++, xm, ym);
+                        nodes.set(n++, xm, -ym); // symmetric (xx')
+                    }
+
+                    // update variables
+                    initAngle = initAngle + kapa;
+                    lm = Math.tan( (90 + initAngle)*RAD );
+                    previous_thetam = current_thetam;
+                    Lp = mm;
+                    side_prev = bm;
+                    prevX = xm;
+                    prevY = ym;
+
+                }
+                prevX = strideX;
+                prevY = strideY;
+            }
+
+            na--;
+        }
+        return Lp;
+    }
+
+    /**
+     *  Returns the topology of the Michell truss with ne bars, from the
+     *  shared cache. The returned graph is frozen.
+     */
+    static TrussGraph topology(int ne) {
+        return TOPOLOGIES.get(ne).graph();
+    }
+
+    /**
+     *  Builds the topology of the Michell truss with ne bars. The topology
+     *  depends only on ne (through the number of levels na) and is built
+     *  directly in frozen form by MichellGenerator.
+     */
+    static TrussGraph buildTopology(int ne) {
+        int na = (int)Math.sqrt(ne/2);
+        if (na == 0) return new TrussGraph(2).freeze();
+        return MichellGenerator.topology(na);
+    }
+
+    /**
+     *  Generates the Michell truss with ne bars, distance h between the
+     *  supports and distance L to the tip, and analyzes it under the tip
+     *  load (Qx, Qy).
+     *
+     *  @throws IllegalArgumentException if no gama satisfies L for ne and h
+     */
+    public static MichellResult solve(int ne, float h, float L, float Qx, float Qy) {
+        return solve(ne, h, L, Qx, Qy, null);
+    }
+
+    /**
+     *  As solve, calling checkpoint (if not null) before each step of the
+     *  gama search, before building the topology and before the analysis.
+     *  Whatever the checkpoint throws aborts the solve.
+     *
+     *  @throws IllegalArgumentException if no gama satisfies L for ne and h
+     */
+    public static MichellResult solve(int ne, float h, float L, float Qx, float Qy, Checkpoint checkpoint) {
+        double gama = gama(ne, h, L, GAMA_TOL, MAX_ITERATIONS, checkpoint);
+        if (Double.isNaN(gama))
+            throw new IllegalArgumentException("No gama satisfies L = " + L + " for ne = " + ne + " and h = " + h);
+        if (checkpoint != null) checkpoint.check();
+        Truss michell = generate(ne, h, L, gama);
+        if (checkpoint != null) checkpoint.check();
+        analyze(michell, Qx, Qy);
+        return new MichellResult(ne, h, L, Qx, Qy, gama, michell);
+    }
+
+    /**
+     *  Moves the nodes of a generated Michell truss, in place, to the
+     *  geometry for distance h between the supports and distance L to the
+     *  tip (the number of bars stays the same), and analyzes it under the
+     *  tip load (Qx, Qy) with Truss.analyze. Since only coordinates change,
+     *  repeated updates of one truss (small changes of h or L while
+     *  exploring or optimizing) are analyzed incrementally.
+     *  The truss must not be shared, for instance through ResultCache.
+     *
+     *  @return the new gama
+     *  @throws IllegalArgumentException if no gama satisfies L for ne and h
+     */
+    public static double update(Truss michell, float h, float L, float Qx, float Qy) {
+        int ne = michell.numElements();
+        double gama = gama(ne, h, L);
+        if (Double.isNaN(gama))
+            throw new IllegalArgumentException("No gama satisfies L = " + L + " for ne = " + ne + " and h = " + h);
+        TrussGeometry nodes = michell.geometry();
+        if (ne == 2) {
+            nodes.set(0, 0, h/2);
+            nodes.set(1, 0, -h/2);
+            nodes.set(2, L, 0);
+        } else {
+            geometry(ne, h, gama, nodes);
+        }
+        int NN = nodes.numNodes();
+        double[] Q = new double[2*NN];
+        Q[2*(NN-1)]   = Qx;
+        Q[2*(NN-1)+1] = Qy;
+        michell.analyze(SUPPORTS, Q);
+        return gama;
+    }
+
+    /**
+     *  Derivative of sigmaFL with respect to gama (per degree) for the
+     *  Michell truss with distance h between the supports, at the given
+     *  gama, where the truss has last been analyzed with Truss.analyze (for
+     *  instance by update). The tip moves with gama, so this is the
+     *  sensitivity along the family of trusses of one ne and h. It is the
+     *  coordinate gradient from one adjoint solve, projected on the
+     *  velocity of the nodes d(xy)/d(gama), which is obtained by central
+     *  differences of the geometry alone (no analysis).
+     */
+    public static double sigmaFLGama(Truss michell, float h, double gama) {
+        double[] grad = michell.sigmaFLGradient();
+        int ne = michell.numElements();
+        if (ne == 2) return 0;  // the geometry does not depend on gama
+        int NN = michell.numNodes();
+        double dg = 1e-6*Math.max(1, Math.abs(gama));
+        TrussGeometry plus = new TrussGeometry(NN);
+        TrussGeometry minus = new TrussGeometry(NN);
+        geometry(ne, h, gama+dg, plus);
+        geometry(ne, h, gama-dg, minus);
+        double[] xp = plus.coordinates();
+        double[] xm = minus.coordinates();
+        double d = 0;
+        for (int i=0; i<grad.length; i++) d += grad[i]*(xp[i]-xm[i])/(2*dg);
+        return d;
+    }
+
+    /**
+     *  Structural analysis of a Michell truss under the standard load
+     *  case: both supports (nodes 0 and 1) fixed in X and Y, and a vertical
+     *  load LOAD at the tip (the last node).
+     *  Sets the forces, reactions and performance of the truss.
+     */
+    public static void analyze(Truss michell) {
+        analyze(michell, 0, LOAD);
+    }
+
+    /**
+     *  Structural analysis of a Michell truss with both supports fixed
+     *  and a point load (Qx, Qy) at the tip.
+     *  Sets the forces, reactions and performance of the truss.
+     */
+    public static void analyze(Truss michell, float Qx, float Qy) {
+        /*
+         *  Node coordinates, topology, support and load definitions,
+         *  read directly from the truss arrays
+         */
+        int NN = michell.numNodes();
+        double[] xy = michell.geometry().coordinates();
+
+        // element index pairs, precomputed if the topology comes from the cache
+        TrussGraph graph = michell.topology();
+        TrussTopology topology = TOPOLOGIES.peek(graph.E());
+        boolean cached = (topology != null && topology.graph() == graph);
+        if (!cached) topology = new TrussTopology(graph);
+
+        double[] Q = new double[2*NN];
+        Q[2*(NN-1)]   = Qx;
+        Q[2*(NN-1)+1] = Qy;
+
+        long start = Metrics.start();
+
+        // the truss is symmetric about the X axis: solve half of it, reusing
+        // the symmetry (and refactoring its factors) of a cached topology
+        int[] from = topology.starts(), to = topology.ends();
+        MirrorSymmetry mirror = cached ? TOPOLOGIES.takeSymmetry(graph.E()) : null;
+        if (mirror == null || !mirror.appliesTo(from, to, SUPPORTS) || !mirror.isSymmetric(xy))
+            mirror = MirrorSymmetry.find(xy, from, to, SUPPORTS);
+        Matrix[] fr;
+        if (mirror != null) {
+            fr = mirror.solve(xy, Q);
+            if (cached) TOPOLOGIES.putSymmetry(graph.E(), topology, mirror);
+        }
+        else fr = StructuralAnalysis.SparseJointMethod(xy, from, to, SUPPORTS, Q);
+
+        michell.setForces(fr[0]);
+        michell.setRForces(fr[1]);
+        michell.computePerformance();
+        Metrics.ANALYSIS.stop(start);
+    }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
@@ -0,0 +1,219 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac MichellSweep.java
+ *  Execution:    java MichellSweep
+ *  Dependencies: MichellStructure.java  MichellResult.java  ResultCache.java
+ *                SweepTable.java  Truss.java  Jama.Matrix
+ *
+ *  A headless design-space sweep over Michell trusses. Every combination
+ *  of the given numbers of bars ne, support distances h and load
+ *  distances L is generated, analyzed under the standard tip load and
+ *  scored, and the results are collected in a SweepTable.
+ *
+ *  No PApplet is needed: generation and analysis are done with the static
+ *  methods of MichellStructure, and each configuration is built in its
+ *  own Truss.
+ *
+ *  Configurations are independent, so a sweep can also be spread over
+ *  several threads, either with fork-join (runParallel) or with a given
+ *  executor. Every Truss, TrussGraph and Matrix is created and used by a
+ *  single task, and each task writes only its own rows of the table.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+import Jama.Matrix;
+
+public class MichellSweep {
+
+    // rows evaluated by a single task before it stops splitting
+    private static final int GRAIN = 4;
+
+    /**
+     *  Generates, analyzes and scores every (ne, h, L) combination.
+     */
+    public static SweepTable run(final int[] ne, final float[] h, final float[] L) {
+        return run(ne, h, L, (ResultCache) null);
+    }
+
+    /**
+     *  Sequential sweep that takes solved trusses from the given cache
+     *  when available (and adds the ones it solves to it).
+     */
+    public static SweepTable run(final int[] ne, final float[] h, final float[] L, ResultCache cache) {
+        SweepTable table = new SweepTable(ne, h, L);
+        for (int r=0; r<table.size(); r++) {
+            evaluate(table, r, cache);
+        }
+        return table;
+    }
+
+    /**
+     *  Parallel sweep on the common fork-join pool.
+     */
+    public static SweepTable runParallel(final int[] ne, final float[] h, final float[] L) {
+        return runParallel(ne, h, L, ForkJoinPool.commonPool());
+    }
+
+    /**
+     *  Parallel sweep on the given fork-join pool. The rows are split
+     *  recursively, and idle workers steal the remaining ranges, which
+     *  balances the load between cheap (small ne) and expensive rows.
+     */
+    public static SweepTable runParallel(final int[] ne, final float[] h, final float[] L, ForkJoinPool pool) {
+        return runParallel(ne, h, L, pool, null);
+    }
+
+    /**
+     *  Parallel sweep on the given fork-join pool that takes solved trusses
+     *  from the given (thread safe) cache when available.
+     */
+    public static SweepTable runParallel(final int[] ne, final float[] h, final float[] L, ForkJoinPool pool, ResultCache cache) {
+        SweepTable table = new SweepTable(ne, h, L);
+        pool.invoke(new SweepTask(table, 0, table.size(), cache));
+        return table;
+    }
+
+    /**
+     *  Parallel sweep on the given executor. The rows are dealt out to
+     *  chunks round-robin, so that each chunk gets a similar mix of cheap
+     *  and expensive configurations, and one task per chunk is submitted.
+     *
+     *  @param chunks number of tasks, typically a small multiple of the
+     *         number of threads of the executor
+     *  @throws RuntimeException if a task fails or the calling thread is
+     *         interrupted while waiting
+     */
+    public static SweepTable run(final int[] ne, final float[] h, final float[] L, ExecutorService executor, int chunks) {
+        return run(ne, h, L, executor, chunks, null);
+    }
+
+    /**
+     *  Parallel sweep on the given executor that takes solved trusses
+     *  from the given (thread safe) cache when available.
+     */
+    public static SweepTable run(final int[] ne, final float[] h, final float[] L, ExecutorService executor, int chunks,
+                                 final ResultCache cache) {
+        if (chunks < 1) throw new IllegalArgumentException("Number of chunks must be positive");
+        final SweepTable table = new SweepTable(ne, h, L);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+        for (int c=0; c<chunks; c++) {
+            final int first = c;
+            final int stride = chunks;
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    for (int r=first; r<table.size(); r+=stride) evaluate(table, r, cache);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> f: executor.invokeAll(tasks)) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Sweep interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Sweep failed", e.getCause());
+        }
+        return table;
+    }
+
+    /**
+     *  Fork-join task that evaluates the rows lo..hi-1 of a table.
+     */
+    private static class SweepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SweepTable table_;
+        private final int lo_, hi_;
+        private final ResultCache cache_;
+
+        SweepTask(SweepTable table, int lo, int hi, ResultCache cache) {
+            table_ = table;
+            lo_ = lo;
+            hi_ = hi;
+            cache_ = cache;
+        }
+
+        protected void compute() {
+            if (hi_-lo_ <= GRAIN) {
+                for (int r=lo_; r<hi_; r++) evaluate(table_, r, cache_);
+            } else {
+                int mid = (lo_+hi_) >>> 1;
+                invokeAll(new SweepTask(table_, lo_, mid, cache_), new SweepTask(table_, mid, hi_, cache_));
+            }
+        }
+    }
+
+    /**
+     *  Generates, analyzes and scores the configuration of row r, and
+     *  records the results in the table. The solved truss is taken from
+     *  (or added to) the cache, unless the cache is null.
+     */
+    static void evaluate(SweepTable table, int r, ResultCache cache) {
+        int ne = table.ne(r);
+        float h = table.h(r);
+        float L = table.L(r);
+        MichellResult result;
+        try {
+            if (cache != null) {
+                result = cache.get(ne, h, L, 0, MichellStructure.LOAD);
+            } else {
+                result = MichellStructure.solve(ne, h, L, 0, MichellStructure.LOAD);
+            }
+        } catch (RuntimeException e) { // no gama, singular or indeterminate
+            table.setInvalid(r);
+            return;
+        }
+        Truss michell = result.truss();
+        Matrix F = michell.forces();
+        float maxForce = 0;
+        for (int i=0; i<F.getRowDimension(); i++) {
+            maxForce = Math.max(maxForce, (float)Math.abs(F.get(i, 0)));
+        }
+        table.set(r, (float)result.gama(), michell.sigmaFL(), michell.numNodes(), michell.topology().E(), maxForce);
+    }
+
+    /**
+     *  Returns the numbers of bars of the Michell trusses with na levels,
+     *  ne = 2*na*na, for na = from..to.
+     */
+    public static int[] bars(int from, int to) {
+        if (from < 1 || to < from) throw new IllegalArgumentException("Levels must satisfy 1 <= from <= to");
+        int[] ne = new int[to-from+1];
+        for (int na=from; na<=to; na++) ne[na-from] = 2*na*na;
+        return ne;
+    }
+
+    /**
+     *  Returns count evenly spaced values from..to (inclusive).
+     */
+    public static float[] range(float from, float to, int count) {
+        if (count < 1) throw new IllegalArgumentException("Count must be positive");
+        float[] v = new float[count];
+        for (int i=0; i<count; i++) {
+            v[i] = (count == 1) ? from : from + (to-from)*i/(count-1);
+        }
+        return v;
+    }
+
+    /**
+     *  Test client and sample execution: sweeps the configurations
+     *  offered by the sliders of MitchellTrussMain.
+     */
+    public static void main(String[] args) {
+        SweepTable table = run(bars(1, 7), new float[]{4, 8, 16}, new float[]{40});
+        System.out.print(table);
+    }
+
+}
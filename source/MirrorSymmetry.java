@@ -0,0 +1,476 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac MirrorSymmetry.java
+ *  Execution:    java MirrorSymmetry
+ *  Dependencies: SparseMatrix.java  SparseLU.java  MichellStructure.java
+ *                StructuralAnalysis.java  Truss.java  TrussTopology.java
+ *                Metrics.java  Jama.Matrix
+ *
+ *  Method of joints on half of a truss that is mirror symmetric about the
+ *  X axis: every node off the axis has a mirror node, every element a
+ *  mirror element and every fixity a mirror fixity (same direction, at
+ *  the mirror node). Nodes on the axis are their own mirrors.
+ *
+ *  A load vector splits into a symmetric part, whose mirror is itself,
+ *  and an antisymmetric part, whose mirror is its negative. Under the
+ *  symmetric part mirror elements carry equal forces, and under the
+ *  antisymmetric part opposite forces, so each part is solved on the
+ *  half structure: one node of each mirror pair with both equations, and the
+ *  nodes on the axis with the one equation that the symmetry does not
+ *  satisfy by itself (X for the symmetric part, Y for the antisymmetric
+ *  part), which is the boundary condition on the axis. Each pair of
+ *  mirror unknowns becomes one unknown of the half system. The forces
+ *  and reactions of both parts are then mirrored back and added.
+ *
+ *  A half system has about half the DOFs of the full one, and a load on
+ *  the axis (such as the tip load of a Michell truss) is all symmetric or
+ *  all antisymmetric, so it needs one half system alone. The mirror maps
+ *  and the patterns of the half systems depend only on the topology and
+ *  supports; later solves reassemble the values in place and refactor
+ *  in the same storage.
+ *
+ *  An instance is not safe for use by several threads at once.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import Jama.Matrix;
+
+public class MirrorSymmetry {
+
+    /** Tolerance of mirrored coordinates, relative to the size of the truss. */
+    static final double TOL = 1e-9;
+
+    private final int nNodes_, nElements_, nFixities_;
+    private final int[] from_, to_, S_;      // topology and supports
+    private final int[] nodeMirror_;         // mirror of each node (itself on the axis)
+    private final int[] elementMirror_;      // mirror of each element
+    private final int[] fixityMirror_;       // mirror of each fixity
+    private final Half even_;                // half system of the symmetric part
+    private final Half odd_;                 // half system of the antisymmetric part
+
+    private MirrorSymmetry(int[] from, int[] to, int[] S, int[] nodeMirror, int[] elementMirror,
+                           int[] fixityMirror) {
+        nNodes_ = nodeMirror.length;
+        nElements_ = from.length;
+        nFixities_ = S.length/2;
+        from_ = from;
+        to_ = to;
+        S_ = S.clone();
+        nodeMirror_ = nodeMirror;
+        elementMirror_ = elementMirror;
+        fixityMirror_ = fixityMirror;
+        even_ = new Half(true);
+        odd_ = new Half(false);
+    }
+
+    /**
+     *  Finds the mirror symmetry about the X axis of the truss with node
+     *  coordinates xy, topology from/to and supports S (in the formats of
+     *  StructuralAnalysis.SparseJointMethod).
+     *
+     *  @return the symmetry, or null if the truss is not mirror symmetric
+     *          or its half structures are not statically determinate
+     */
+    public static MirrorSymmetry find(double[] xy, int[] from, int[] to, int[] S) {
+        int N = xy.length/2;
+        double tol = tolerance(xy);
+        int[] nodeMirror = mirrorNodes(xy, tol);
+        if (nodeMirror == null) return null;
+        int[] elementMirror = mirrorElements(N, from, to, nodeMirror);
+        if (elementMirror == null) return null;
+        int[] fixityMirror = mirrorFixities(N, S, nodeMirror);
+        if (fixityMirror == null) return null;
+        MirrorSymmetry m = new MirrorSymmetry(from, to, S, nodeMirror, elementMirror, fixityMirror);
+        if (!m.even_.square() || !m.odd_.square()) return null;
+        return m;
+    }
+
+    // G E T T E R S
+    public int    numNodes() {  return nNodes_;  }
+    public int numElements() {  return nElements_;  }
+    public int numFixities() {  return nFixities_;  }
+    public int  mirror(int node) {  return nodeMirror_[node];  }
+    public int elementMirror(int e) {  return elementMirror_[e];  }
+
+    /** Number of equations of the symmetric and antisymmetric half systems. */
+    public int     symmetricDofs() {  return even_.n_;  }
+    public int antisymmetricDofs() {  return odd_.n_;  }
+
+    /**
+     *  True if the symmetry was found for this topology and these supports.
+     */
+    public boolean appliesTo(int[] from, int[] to, int[] S) {
+        return from == from_ && to == to_ && Arrays.equals(S, S_);
+    }
+
+    /**
+     *  True if the node coordinates xy are still mirror symmetric.
+     */
+    public boolean isSymmetric(double[] xy) {
+        if (xy.length != 2*nNodes_) return false;
+        double tol = tolerance(xy);
+        for (int v=0; v<nNodes_; v++) {
+            int m = nodeMirror_[v];
+            if (Math.abs(xy[2*v] - xy[2*m]) > tol || Math.abs(xy[2*v+1] + xy[2*m+1]) > tol) return false;
+        }
+        return true;
+    }
+
+    /**
+     *  Solves the method of joints for node coordinates xy and load vector
+     *  Q (in the formats of StructuralAnalysis.SparseJointMethod) on the
+     *  half structure, writing the element forces followed by the support
+     *  reactions of the whole truss into x.
+     *
+     *  @return x
+     *  @throws IllegalArgumentException if the inputs do not match or xy
+     *          is no longer mirror symmetric
+     *  @throws RuntimeException if the truss is a mechanism
+     */
+    public double[] solve(double[] xy, double[] Q, double[] x) {
+        if (xy.length != 2*nNodes_ || Q.length != 2*nNodes_ || x.length != nElements_+nFixities_)
+            throw new IllegalArgumentException("Inputs do not match the symmetry");
+        if (!isSymmetric(xy)) throw new IllegalArgumentException("The truss is not mirror symmetric");
+        Arrays.fill(x, 0);
+        even_.solve(xy, Q, x);
+        odd_.solve(xy, Q, x);
+        return x;
+    }
+
+    /**
+     *  As solve, returning the element forces F and support reactions R
+     *  (as StructuralAnalysis.JointMethod).
+     */
+    public Matrix[] solve(double[] xy, double[] Q) {
+        return StructuralAnalysis.splitForces(solve(xy, Q, new double[nElements_+nFixities_]), nElements_);
+    }
+
+    // tolerance of mirrored coordinates of the truss
+    private static double tolerance(double[] xy) {
+        double size = 0;
+        for (int i=0; i<xy.length; i++) size = Math.max(size, Math.abs(xy[i]));
+        return TOL*Math.max(size, 1);
+    }
+
+    // mirror of each node, or null if some node has none
+    private static int[] mirrorNodes(final double[] xy, double tol) {
+        int N = xy.length/2;
+        int[] mirror = new int[N];
+        int nUpper = 0, nLower = 0;
+        for (int v=0; v<N; v++) {
+            if (xy[2*v+1] > tol) nUpper++;
+            else if (xy[2*v+1] < -tol) nLower++;
+        }
+        if (nUpper != nLower) return null;
+
+        // lower nodes by X; each upper node looks for its mirror among the
+        // lower nodes within tol in X
+        Integer[] lower = new Integer[nLower];
+        for (int v=0, k=0; v<N; v++) {
+            if (xy[2*v+1] < -tol) lower[k++] = v;
+        }
+        Arrays.sort(lower, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Double.compare(xy[2*a], xy[2*b]);
+            }
+        });
+        double[] lowerX = new double[nLower];
+        for (int k=0; k<nLower; k++) lowerX[k] = xy[2*lower[k]];
+        boolean[] taken = new boolean[nLower];
+
+        for (int v=0; v<N; v++) {
+            double x = xy[2*v], y = xy[2*v+1];
+            if (Math.abs(y) <= tol) {
+                mirror[v] = v;
+                continue;
+            }
+            if (y < 0) continue;
+            int k = Arrays.binarySearch(lowerX, x - tol);
+            if (k < 0) k = -k-1;
+            while (k > 0 && lowerX[k-1] >= x - tol) k--;
+            int found = -1;
+            for (; k<nLower && lowerX[k] <= x + tol; k++) {
+                if (!taken[k] && Math.abs(xy[2*lower[k]+1] + y) <= tol) {
+                    found = k;
+                    break;
+                }
+            }
+            if (found < 0) return null;
+            taken[found] = true;
+            mirror[v] = lower[found];
+            mirror[lower[found]] = v;
+        }
+        return mirror;
+    }
+
+    // mirror of each element, or null if some element has none
+    private static int[] mirrorElements(int N, int[] from, int[] to, int[] nodeMirror) {
+        int E = from.length;
+
+        // elements by their lower end node (counting sort)
+        int[] start = new int[N+1];
+        for (int e=0; e<E; e++) start[Math.min(from[e], to[e])+1]++;
+        for (int v=0; v<N; v++) start[v+1] += start[v];
+        int[] byNode = new int[E];
+        int[] next = Arrays.copyOf(start, N);
+        for (int e=0; e<E; e++) byNode[next[Math.min(from[e], to[e])]++] = e;
+
+        int[] mirror = new int[E];
+        for (int e=0; e<E; e++) {
+            int a = nodeMirror[from[e]], b = nodeMirror[to[e]];
+            int lo = Math.min(a, b), hi = Math.max(a, b);
+            mirror[e] = -1;
+            for (int p=start[lo]; p<start[lo+1]; p++) {
+                int f = byNode[p];
+                if (Math.max(from[f], to[f]) == hi) {
+                    mirror[e] = f;
+                    break;
+                }
+            }
+            if (mirror[e] < 0) return null;
+        }
+        return mirror;
+    }
+
+    // mirror of each fixity, or null if some fixity has none
+    private static int[] mirrorFixities(int N, int[] S, int[] nodeMirror) {
+        int nFixities = S.length/2;
+        int[] at = new int[2*N];  // fixity at each DOF, -1 if none
+        Arrays.fill(at, -1);
+        for (int k=0; k<nFixities; k++) {
+            if (S[2*k+1] != 1 && S[2*k+1] != 2)
+                throw new IllegalArgumentException("Fixity direction must be 1 (X) or 2 (Y)");
+            int dof = 2*S[2*k] + S[2*k+1]-1;
+            if (at[dof] >= 0) return null;  // repeated fixity
+            at[dof] = k;
+        }
+        int[] mirror = new int[nFixities];
+        for (int k=0; k<nFixities; k++) {
+            mirror[k] = at[2*nodeMirror[S[2*k]] + S[2*k+1]-1];
+            if (mirror[k] < 0) return null;
+        }
+        return mirror;
+    }
+
+    /**
+     *  The half system of the symmetric or the antisymmetric part: its
+     *  rows are the DOFs of one node of each mirror pair and one DOF of each
+     *  node on the axis, and its columns one unknown of each pair of
+     *  mirror unknowns (element forces, then reactions) that the part does
+     *  not force to zero.
+     */
+    private final class Half {
+
+        private final boolean symmetric_;
+        private final int[] row_;            // half row of each DOF, -1 if none
+        private final int[] dof_;            // DOF of each half row
+        private final int[] unknown_;        // unknown of each half column (element, or nElements + fixity)
+        private final int n_;                // number of half rows
+        private final int[] colPtr_;         // half matrix (compressed columns)
+        private final int[] rowIdx_;
+        private final double[] values_;
+        private final SparseMatrix A_;
+        private final double[] b_, y_;       // right-hand side and solution
+        private SparseLU lu_;                // null before the first solve
+
+        Half(boolean symmetric) {
+            symmetric_ = symmetric;
+            row_ = new int[2*nNodes_];
+            int rows = 0;
+            for (int v=0; v<nNodes_; v++) {
+                int m = nodeMirror_[v];
+                boolean axis = (m == v);
+                for (int d=0; d<2; d++) {
+                    // one node of each pair; on the axis only X (symmetric) or Y (antisymmetric)
+                    boolean keep = axis ? (d == 0) == symmetric : v < m;
+                    row_[2*v+d] = keep ? rows++ : -1;
+                }
+            }
+            dof_ = new int[rows];
+            for (int i=0; i<row_.length; i++) if (row_[i] >= 0) dof_[row_[i]] = i;
+
+            int cols = 0;
+            int[] unknown = new int[nElements_+nFixities_];
+            for (int e=0; e<nElements_; e++) {
+                int m = elementMirror_[e];
+                if (e < m || (e == m && symmetric)) unknown[cols++] = e;
+            }
+            for (int k=0; k<nFixities_; k++) {
+                int m = fixityMirror_[k];
+                if (k < m || (k == m && sign(nElements_+k) > 0)) unknown[cols++] = nElements_+k;
+            }
+            unknown_ = Arrays.copyOf(unknown, cols);
+            n_ = rows;
+
+            // pattern: each column holds the rows of the unknown and of its
+            // mirror (at most 8), without repeats
+            colPtr_ = new int[cols+1];
+            rowIdx_ = new int[8*cols];
+            values_ = new double[8*cols];
+            int nz = 0;
+            for (int j=0; j<cols; j++) {
+                colPtr_[j] = nz;
+                int u = unknown_[j];
+                nz = addRows(u, colPtr_[j], nz);
+                int m = mirrorUnknown(u);
+                if (m != u) nz = addRows(m, colPtr_[j], nz);
+            }
+            colPtr_[cols] = nz;
+            A_ = new SparseMatrix(rows, cols, colPtr_, rowIdx_, values_);
+            b_ = new double[rows];
+            y_ = new double[rows];
+        }
+
+        // true if the half system is square
+        boolean square() {  return n_ == unknown_.length;  }
+
+        // factor of the mirror of unknown u relative to u in this part
+        int sign(int u) {
+            int s = symmetric_ ? 1 : -1;
+            if (u >= nElements_ && S_[2*(u-nElements_)+1] == 2) s = -s;  // Y reactions flip
+            return s;
+        }
+
+        // adds the half rows of unknown u to the column starting at start,
+        // whose entries end at nz; returns the new end
+        private int addRows(int u, int start, int nz) {
+            if (u < nElements_) {
+                nz = addRow(2*from_[u], start, nz);
+                nz = addRow(2*from_[u]+1, start, nz);
+                nz = addRow(2*to_[u], start, nz);
+                nz = addRow(2*to_[u]+1, start, nz);
+            } else {
+                int k = u-nElements_;
+                nz = addRow(2*S_[2*k] + S_[2*k+1]-1, start, nz);
+            }
+            return nz;
+        }
+
+        private int addRow(int dof, int start, int nz) {
+            int r = row_[dof];
+            if (r < 0) return nz;
+            for (int p=start; p<nz; p++) if (rowIdx_[p] == r) return nz;
+            rowIdx_[nz] = r;
+            return nz+1;
+        }
+
+        /** Assembles the values of the half matrix for coordinates xy. */
+        void assemble(double[] xy) {
+            long start = Metrics.start();
+            Arrays.fill(values_, 0, colPtr_[unknown_.length], 0);
+            for (int j=0; j<unknown_.length; j++) {
+                int u = unknown_[j];
+                add(j, u, 1, xy);
+                int m = mirrorUnknown(u);
+                if (m != u) add(j, m, sign(u), xy);
+            }
+            Metrics.ASSEMBLY.stop(start);
+        }
+
+        // adds factor times the full column of unknown u to half column j
+        private void add(int j, int u, double factor, double[] xy) {
+            if (u < nElements_) {
+                int n1 = from_[u], n2 = to_[u];
+                double dx = xy[2*n2]   - xy[2*n1];
+                double dy = xy[2*n2+1] - xy[2*n1+1];
+                double dist = Math.sqrt(dx*dx + dy*dy);
+                double cosa = factor*dx/dist;
+                double sina = factor*dy/dist;
+                addValue(j, 2*n1, cosa);
+                addValue(j, 2*n1+1, sina);
+                addValue(j, 2*n2, -cosa);
+                addValue(j, 2*n2+1, -sina);
+            } else {
+                int k = u-nElements_;
+                addValue(j, 2*S_[2*k] + S_[2*k+1]-1, factor);
+            }
+        }
+
+        private void addValue(int j, int dof, double value) {
+            int r = row_[dof];
+            if (r < 0) return;
+            for (int p=colPtr_[j]; p<colPtr_[j+1]; p++) {
+                if (rowIdx_[p] == r) {
+                    values_[p] += value;
+                    return;
+                }
+            }
+        }
+
+        /**
+         *  Solves this part of load vector Q and adds its forces and
+         *  reactions, mirrored, to x. Does nothing if the part is zero.
+         */
+        void solve(double[] xy, double[] Q, double[] x) {
+            boolean zero = true;
+            for (int i=0; i<n_; i++) {
+                int dof = dof_[i];
+                int v = dof/2, d = dof%2;
+                double q = Q[dof];
+                double qm = Q[2*nodeMirror_[v]+d]*(d == 0 ? 1 : -1);  // mirrored load
+                b_[i] = -0.5*(symmetric_ ? q + qm : q - qm);
+                zero &= (b_[i] == 0);
+            }
+            if (zero) return;
+            assemble(xy);
+            long start = Metrics.start();
+            if (lu_ == null) {
+                lu_ = new SparseLU(A_);
+            } else {
+                try {
+                    lu_.refactor(A_);
+                } catch (RuntimeException e) {
+                    lu_ = null;  // the factors are incomplete
+                    throw e;
+                }
+            }
+            lu_.solve(b_, y_);
+            Metrics.SOLVE.stop(start);
+            for (int j=0; j<unknown_.length; j++) {
+                int u = unknown_[j];
+                x[u] += y_[j];
+                int m = mirrorUnknown(u);
+                if (m != u) x[m] += sign(u)*y_[j];
+            }
+        }
+    }
+
+    // mirror of unknown u (element, or nElements + fixity)
+    private int mirrorUnknown(int u) {
+        return (u < nElements_) ? elementMirror_[u] : nElements_ + fixityMirror_[u-nElements_];
+    }
+
+    /**
+     *  Test client and sample execution: solves Michell trusses on their
+     *  half structures and compares with the full analysis.
+     */
+    public static void main(String[] args) {
+        int[] S = {0, 1, 0, 2, 1, 1, 1, 2};
+        for (int ne : new int[]{2, 32, 512, 4608}) {
+            Truss truss = MichellStructure.generate(ne, 8, 40);
+            int NN = truss.numNodes();
+            double[] xy = truss.geometry().coordinates();
+            TrussTopology topology = new TrussTopology(truss.topology());
+            double[] Q = new double[2*NN];
+            Q[2*(NN-1)] = 10;
+            Q[2*(NN-1)+1] = MichellStructure.LOAD;
+
+            long start = System.nanoTime();
+            Matrix[] full = StructuralAnalysis.SparseJointMethod(xy, topology.starts(), topology.ends(), S, Q);
+            double tFull = (System.nanoTime()-start)/1e6;
+            start = System.nanoTime();
+            MirrorSymmetry mirror = find(xy, topology.starts(), topology.ends(), S);
+            Matrix[] half = mirror.solve(xy, Q);
+            double tHalf = (System.nanoTime()-start)/1e6;
+            double diff = full[0].minus(half[0]).normInf() + full[1].minus(half[1]).normInf();
+            System.out.printf("ne = %d: %d DOFs, halves %d + %d, full %.1f ms, half %.1f ms, difference %.2e%n",
+                              ne, 2*NN, mirror.symmetricDofs(), mirror.antisymmetricDofs(), tFull, tHalf, diff);
+        }
+    }
+
+}
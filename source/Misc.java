@@ -1,3 +1,5 @@
+package mit4s48;
+
 /*************************************************************************
  *  Compilation:  javac Misc.java
  *  Execution:    java Misc
@@ -10,12 +12,39 @@
  *  @author Alexandros Haridis, MIT
  *************************************************************************/
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 import Jama.Matrix;
 import processing.core.PApplet;
 import processing.core.PFont;
 
 public class Misc {
 
+    // fonts created by each applet, by name and size
+    private static final Map<PApplet, Map<String, PFont>> fonts = new WeakHashMap<PApplet, Map<String, PFont>>();
+
+    /**
+     *  Returns the smoothed font of the given name and size for the applet,
+     *  created on the first request and cached afterwards (createFont is
+     *  far too slow to call on every frame).
+     */
+    public static synchronized PFont font(final PApplet p5, String name, int size) {
+        Map<String, PFont> cache = fonts.get(p5);
+        if (cache == null) {
+            cache = new HashMap<String, PFont>();
+            fonts.put(p5, cache);
+        }
+        String key = name + "/" + size;
+        PFont font = cache.get(key);
+        if (font == null) {
+            font = p5.createFont(name, size, true);
+            cache.put(key, font);
+        }
+        return font;
+    }
+
     public static void printMatrix(final Matrix m) {
         for (int i=0; i<m.getRowDimension(); i++) {
 	    System.out.print("| ");
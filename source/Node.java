@@ -1,3 +1,5 @@
+package mit4s48;
+
 /*************************************************************************
  *  Compilation:  javac Node.java
  *  Execution:    java Node
@@ -47,10 +49,15 @@ public class Node {
 	
     // draw on screen using given Processing Applet
     public void draw(PApplet p5, int scale) {
+        draw(p5, x_, y_, scale);
+    }
+
+    // draw a node at (x, y) on screen using given Processing Applet
+    public static void draw(PApplet p5, double x, double y, int scale) {
         p5.fill(190);
         p5.strokeWeight(1);
         p5.stroke(0);
-        p5.ellipse(x_*scale, y_*scale, 5, 5);
+        p5.ellipse((float)x*scale, (float)y*scale, 5, 5);
     }
 	
 }
@@ -0,0 +1,146 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac ResultCache.java
+ *  Execution:    java ResultCache
+ *  Dependencies: MichellResult.java  MichellStructure.java
+ *
+ *  A bounded cache of solved Michell trusses, keyed by the generation
+ *  parameters (ne, h, L) and the tip load (Qx, Qy). Revisiting a
+ *  configuration, from the sliders of the interactive tool or in a batch
+ *  sweep, returns the cached geometry, forces, reactions and sigmaFL
+ *  instead of generating and analyzing the truss again.
+ *
+ *  The cache holds at most a given number of results and of (estimated)
+ *  bytes, and evicts the least recently used results first. It counts
+ *  hits and misses and is safe for use by several threads; on a miss the
+ *  truss is solved outside the lock, so concurrent misses do not wait on
+ *  each other.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ResultCache {
+
+    private final int maxEntries_;   // maximum number of results
+    private final long maxBytes_;    // maximum estimated memory of all results
+    private final LinkedHashMap<Key, MichellResult> map_; // in access order
+    private long bytes_;             // estimated memory of all results
+    private long hits_, misses_;
+
+    /**
+     *  Initializes an empty cache.
+     *
+     *  @throws IllegalArgumentException unless both bounds are positive
+     */
+    public ResultCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1)
+            throw new IllegalArgumentException("Cache bounds must be positive");
+        maxEntries_ = maxEntries;
+        maxBytes_ = maxBytes;
+        map_ = new LinkedHashMap<Key, MichellResult>(16, 0.75f, true);
+    }
+
+    /**
+     *  Returns the solved Michell truss for the given parameters and tip
+     *  load, solving it on a miss.
+     *
+     *  @throws IllegalArgumentException if no gama satisfies L for ne and h
+     */
+    public MichellResult get(int ne, float h, float L, float Qx, float Qy) {
+        return get(ne, h, L, Qx, Qy, null);
+    }
+
+    /**
+     *  As get, passing checkpoint to the solve on a miss (see
+     *  MichellStructure.solve). An aborted solve caches nothing.
+     *
+     *  @throws IllegalArgumentException if no gama satisfies L for ne and h
+     */
+    public MichellResult get(int ne, float h, float L, float Qx, float Qy, MichellStructure.Checkpoint checkpoint) {
+        Key key = new Key(ne, h, L, Qx, Qy);
+        synchronized (this) {
+            MichellResult result = map_.get(key);
+            if (result != null) {
+                hits_++;
+                return result;
+            }
+            misses_++;
+        }
+        MichellResult result = MichellStructure.solve(ne, h, L, Qx, Qy, checkpoint);
+        synchronized (this) {
+            MichellResult previous = map_.put(key, result);
+            if (previous != null) bytes_ -= previous.bytes();
+            bytes_ += result.bytes();
+            evict();
+        }
+        return result;
+    }
+
+    // removes least recently used entries until both bounds are met,
+    // always keeping the most recent one
+    private void evict() {
+        Iterator<Map.Entry<Key, MichellResult>> it = map_.entrySet().iterator();
+        while ((map_.size() > maxEntries_ || bytes_ > maxBytes_) && map_.size() > 1) {
+            MichellResult eldest = it.next().getValue();
+            bytes_ -= eldest.bytes();
+            it.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        map_.clear();
+        bytes_ = 0;
+    }
+
+    // G E T T E R S
+    public synchronized int   size() {  return map_.size();  }
+    public synchronized long bytes() {  return bytes_;  }
+    public synchronized long  hits() {  return hits_;  }
+    public synchronized long misses() {  return misses_;  }
+
+    /**
+     *  Cache key: generation parameters and tip load.
+     */
+    private static final class Key {
+        private final int ne;
+        private final float h, L, Qx, Qy;
+
+        Key(int ne, float h, float L, float Qx, float Qy) {
+            this.ne = ne;
+            this.h = h;
+            this.L = L;
+            this.Qx = Qx;
+            this.Qy = Qy;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return ne == k.ne
+                && Float.floatToIntBits(h) == Float.floatToIntBits(k.h)
+                && Float.floatToIntBits(L) == Float.floatToIntBits(k.L)
+                && Float.floatToIntBits(Qx) == Float.floatToIntBits(k.Qx)
+                && Float.floatToIntBits(Qy) == Float.floatToIntBits(k.Qy);
+        }
+
+        public int hashCode() {
+            int hash = ne;
+            hash = 31*hash + Float.floatToIntBits(h);
+            hash = 31*hash + Float.floatToIntBits(L);
+            hash = 31*hash + Float.floatToIntBits(Qx);
+            hash = 31*hash + Float.floatToIntBits(Qy);
+            return hash;
+        }
+    }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
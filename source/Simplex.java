@@ -0,0 +1,368 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac Simplex.java
+ *  Execution:    java Simplex
+ *  Dependencies: SparseMatrix.java  SparseLU.java
+ *
+ *  Revised simplex method for linear programs in equality form
+ *
+ *      minimize c'*z  subject to  A*z = b, z >= 0
+ *
+ *  with sparse columns that can be added between solves (column
+ *  generation). The basis matrix B is kept as a sparse LU decomposition
+ *  (SparseLU) together with the eta file of the pivots made since it was
+ *  computed, in product form: each pivot appends the sparse pivot column
+ *  inv(B)*a_q instead of updating an inverse. After REINVERT pivots, or
+ *  sooner once the eta file holds twice the nonzeros of the factors, B
+ *  is factored again from its columns and the eta file is cleared, which
+ *  bounds both the cost and memory of the updates and their round-off.
+ *  The columns of B are factored in the order of their first row, so
+ *  that rows numbered by locality (such as the DOFs of a ground
+ *  structure, node by node) keep the fill small. Memory grows with the
+ *  nonzeros of the columns and of the factors of B, not with the square
+ *  of the number of rows.
+ *
+ *  The first solve starts from a basis of artificial variables, one per
+ *  row, and runs two phases: phase 1 drives the artificials to zero,
+ *  phase 2 minimizes c'*z. Columns added afterwards enter at zero, so the
+ *  current basis stays feasible and a later solve continues phase 2 from
+ *  it (warm start). Artificials never re-enter the basis, and one left in
+ *  the basis at zero leaves it as soon as a pivot column touches its row.
+ *
+ *  Pricing is Dantzig's rule (most negative reduced cost), with a switch
+ *  to Bland's rule after a run of degenerate pivots to prevent cycling.
+ *  The duals y = c_B'*inv(B) are recomputed after each pivot by a solve
+ *  with the transposed factors, and are available after a solve.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.Arrays;
+
+public class Simplex {
+
+    /** Solve outcomes. */
+    public static final int OPTIMAL    = 0;
+    public static final int INFEASIBLE = 1;
+    public static final int UNBOUNDED  = 2;
+    public static final int PIVOT_LIMIT = 3;
+
+    private static final double EPS = 1e-9;        // pivot and feasibility tolerance
+    private static final int REINVERT = 100;       // pivots between factorizations of B
+    private static final int DEGENERATE_RUN = 50;  // degenerate pivots before Bland's rule
+
+    private final int m_;            // number of rows
+    private final double[] b_;       // right-hand side
+
+    private int n_;                  // number of columns, artificials included
+    private int[] colPtr_ = new int[1];   // sparse columns
+    private int[] rowIdx_ = new int[16];
+    private double[] values_ = new double[16];
+    private double[] cost_ = new double[16];
+    private boolean[] artificial_ = new boolean[16];
+    private boolean[] basic_ = new boolean[16];
+
+    private final int[] basis_;      // column in each basis position
+    private final double[] xB_;      // values of the basic variables
+    private SparseLU lu_;            // decomposition of B at the last reinversion
+    private int etas_;               // pivots since then, in the eta file below
+    private final int[] etaPos_;     // basis position of each pivot
+    private final double[] etaPivot_;  // pivot element alpha_r of each pivot
+    private final int[] etaStart_;   // other nonzeros of alpha of each pivot, from etaStart_[k]
+    private int[] etaIdx_ = new int[64];
+    private double[] etaVal_ = new double[64];
+    private final double[] y_;       // duals
+    private final double[] alpha_;   // pivot column inv(B)*a_q
+    private boolean dualsValid_;     // y_ matches the basis and phase
+    private boolean phase2_;
+    private long pivots_;
+
+    /**
+     *  Initializes a program with m equality rows and right-hand side b,
+     *  and no structural columns.
+     */
+    public Simplex(final double[] b) {
+        m_ = b.length;
+        b_ = b.clone();
+        basis_ = new int[m_];
+        xB_ = new double[m_];
+        etaPos_ = new int[REINVERT];
+        etaPivot_ = new double[REINVERT];
+        etaStart_ = new int[REINVERT+1];
+        y_ = new double[m_];
+        alpha_ = new double[m_];
+        for (int i=0; i<m_; i++) {
+            double sign = (b_[i] < 0) ? -1 : 1;
+            int j = n_;
+            addColumn(new int[]{i}, new double[]{sign}, 0);
+            artificial_[j] = true;
+            basic_[j] = true;
+            basis_[i] = j;
+        }
+        reinvert();
+    }
+
+    // G E T T E R S
+    public int       rows() {  return m_;  }
+    public int    columns() {  return n_-m_;  }
+    public long    pivots() {  return pivots_;  }
+
+    /**
+     *  Adds a column with the given nonzeros and cost, nonbasic at zero.
+     *
+     *  @return the index of the column (structural columns are numbered
+     *          from 0 in the order they are added)
+     */
+    public int addColumn(final int[] rows, final double[] values, double cost) {
+        int nnz = colPtr_[n_];
+        if (nnz + rows.length > rowIdx_.length) {
+            int size = 2*(nnz + rows.length);
+            rowIdx_ = Arrays.copyOf(rowIdx_, size);
+            values_ = Arrays.copyOf(values_, size);
+        }
+        if (n_+1 >= cost_.length) {
+            int size = 2*(n_+1);
+            cost_ = Arrays.copyOf(cost_, size);
+            artificial_ = Arrays.copyOf(artificial_, size);
+            basic_ = Arrays.copyOf(basic_, size);
+        }
+        if (n_+2 > colPtr_.length) colPtr_ = Arrays.copyOf(colPtr_, 2*(n_+2));
+        for (int p=0; p<rows.length; p++) {
+            rowIdx_[nnz+p] = rows[p];
+            values_[nnz+p] = values[p];
+        }
+        cost_[n_] = cost;
+        colPtr_[n_+1] = nnz + rows.length;
+        n_++;
+        return n_-1-m_;
+    }
+
+    /**
+     *  Value of structural column j in the current basic solution.
+     */
+    public double value(int j) {
+        int col = j+m_;
+        if (!basic_[col]) return 0;
+        for (int i=0; i<m_; i++) {
+            if (basis_[i] == col) return Math.max(xB_[i], 0);
+        }
+        return 0;
+    }
+
+    /**
+     *  Values of all structural columns in the current basic solution.
+     */
+    public double[] values() {
+        double[] z = new double[n_-m_];
+        for (int i=0; i<m_; i++) {
+            if (!artificial_[basis_[i]]) z[basis_[i]-m_] = Math.max(xB_[i], 0);
+        }
+        return z;
+    }
+
+    /**
+     *  The duals y = c_B'*inv(B) of the current basis (the phase 2
+     *  costs), one per row. The reduced cost of a column a with cost c
+     *  is c - y'*a.
+     */
+    public double[] duals() {
+        computeDuals();
+        return y_.clone();
+    }
+
+    /**
+     *  Objective value c'*z of the current basic solution.
+     */
+    public double objective() {
+        double z = 0;
+        for (int i=0; i<m_; i++) {
+            if (!artificial_[basis_[i]]) z += cost_[basis_[i]]*xB_[i];
+        }
+        return z;
+    }
+
+    /**
+     *  Solves the program from the current basis, with at most
+     *  maxPivots pivots.
+     *
+     *  @return OPTIMAL, INFEASIBLE, UNBOUNDED or PIVOT_LIMIT
+     */
+    public int solve(long maxPivots) {
+        long limit = pivots_ + maxPivots;
+        if (!phase2_) {
+            int status = iterate(limit);
+            if (status != OPTIMAL) return status;
+            double infeasibility = 0, scale = 1;
+            for (int i=0; i<m_; i++) {
+                if (artificial_[basis_[i]]) infeasibility += Math.abs(xB_[i]);
+                scale = Math.max(scale, Math.abs(b_[i]));
+            }
+            if (infeasibility > 1e-7*scale) return INFEASIBLE;
+            phase2_ = true;
+            dualsValid_ = false;
+        }
+        return iterate(limit);
+    }
+
+    // pivots until the current phase is optimal
+    private int iterate(long limit) {
+        int degenerate = 0;
+        while (true) {
+            if (pivots_ >= limit) return PIVOT_LIMIT;
+            if (!dualsValid_) computeDuals();
+
+            // pricing
+            boolean bland = degenerate >= DEGENERATE_RUN;
+            int q = -1;
+            double best = 0;
+            for (int j=0; j<n_; j++) {
+                if (basic_[j] || artificial_[j]) continue;
+                double d = cost(j);
+                for (int p=colPtr_[j]; p<colPtr_[j+1]; p++) d -= y_[rowIdx_[p]]*values_[p];
+                double tol = EPS*Math.max(1, Math.abs(cost(j)));
+                if (d < -tol && (q < 0 || (!bland && d < best))) {
+                    q = j;
+                    best = d;
+                    if (bland) break;
+                }
+            }
+            if (q < 0) return OPTIMAL;
+
+            // pivot column alpha = inv(B)*a_q
+            Arrays.fill(alpha_, 0);
+            for (int p=colPtr_[q]; p<colPtr_[q+1]; p++) alpha_[rowIdx_[p]] = values_[p];
+            ftran(alpha_);
+
+            // ratio test (Harris): artificials at zero leave first in phase 2
+            int leave = -1;
+            double bound = Double.POSITIVE_INFINITY;
+            for (int i=0; i<m_; i++) {
+                if (phase2_ && artificial_[basis_[i]] && Math.abs(alpha_[i]) > EPS) {
+                    bound = 0;
+                    leave = i;
+                    break;
+                }
+                if (alpha_[i] > EPS) bound = Math.min(bound, (Math.max(xB_[i], 0) + EPS)/alpha_[i]);
+            }
+            if (leave < 0) {
+                if (bound == Double.POSITIVE_INFINITY) return UNBOUNDED;
+                double largest = 0;
+                for (int i=0; i<m_; i++) {
+                    if (alpha_[i] > EPS && Math.max(xB_[i], 0)/alpha_[i] <= bound) {
+                        boolean better = bland ? (leave < 0 || basis_[i] < basis_[leave]) : alpha_[i] > largest;
+                        if (better) {
+                            largest = alpha_[i];
+                            leave = i;
+                        }
+                    }
+                }
+            }
+
+            double theta = Math.max(xB_[leave], 0)/alpha_[leave];
+            if (phase2_ && artificial_[basis_[leave]]) theta = 0;
+            degenerate = (theta == 0) ? degenerate+1 : 0;
+            pivot(leave, q, theta);
+        }
+    }
+
+    private double cost(int j) {
+        if (phase2_) return artificial_[j] ? 0 : cost_[j];
+        return artificial_[j] ? 1 : 0;
+    }
+
+    // y = inv(B')*c_B
+    private void computeDuals() {
+        dualsValid_ = true;
+        for (int i=0; i<m_; i++) y_[i] = cost(basis_[i]);
+        btran(y_);
+    }
+
+    // v = inv(B)*v in place: the factors of B, then the etas in pivot order
+    private void ftran(double[] v) {
+        lu_.solve(v, v);
+        for (int k=0; k<etas_; k++) {
+            int r = etaPos_[k];
+            double vr = v[r]/etaPivot_[k];
+            v[r] = vr;
+            if (vr == 0) continue;
+            for (int p=etaStart_[k]; p<etaStart_[k+1]; p++) v[etaIdx_[p]] -= etaVal_[p]*vr;
+        }
+    }
+
+    // v = inv(B')*v in place: the etas transposed in reverse pivot order,
+    // then the transposed factors of B
+    private void btran(double[] v) {
+        for (int k=etas_-1; k>=0; k--) {
+            int r = etaPos_[k];
+            double vr = v[r];
+            for (int p=etaStart_[k]; p<etaStart_[k+1]; p++) vr -= etaVal_[p]*v[etaIdx_[p]];
+            v[r] = vr/etaPivot_[k];
+        }
+        lu_.solveTranspose(v, v);
+    }
+
+    // replaces basis position r by column q, moving the basic solution by
+    // theta, and appends the eta of the pivot column alpha
+    private void pivot(int r, int q, double theta) {
+        for (int i=0; i<m_; i++) xB_[i] -= theta*alpha_[i];
+        xB_[r] = theta;
+        int nnz = etaStart_[etas_];
+        if (nnz + m_ > etaIdx_.length) {
+            int size = Math.max(2*etaIdx_.length, nnz + m_);
+            etaIdx_ = Arrays.copyOf(etaIdx_, size);
+            etaVal_ = Arrays.copyOf(etaVal_, size);
+        }
+        for (int i=0; i<m_; i++) {
+            if (i == r || alpha_[i] == 0) continue;
+            etaIdx_[nnz] = i;
+            etaVal_[nnz++] = alpha_[i];
+        }
+        etaPos_[etas_] = r;
+        etaPivot_[etas_] = alpha_[r];
+        etaStart_[++etas_] = nnz;
+        basic_[basis_[r]] = false;
+        basic_[q] = true;
+        basis_[r] = q;
+        pivots_++;
+        dualsValid_ = false;
+        if (etas_ == REINVERT || etaStart_[etas_] > 2*(lu_.nnzL()+lu_.nnzU())) reinvert();
+    }
+
+    // factors B from the basis columns, clears the eta file and recomputes
+    // the basic solution xB = inv(B)*b
+    private void reinvert() {
+        etas_ = 0;
+        dualsValid_ = false;
+        int[] colPtr = new int[m_+1];
+        for (int i=0; i<m_; i++) colPtr[i+1] = colPtr[i] + colPtr_[basis_[i]+1] - colPtr_[basis_[i]];
+        int[] rowIdx = new int[colPtr[m_]];
+        double[] values = new double[colPtr[m_]];
+        for (int i=0; i<m_; i++) {
+            int j = basis_[i];
+            int len = colPtr_[j+1] - colPtr_[j];
+            System.arraycopy(rowIdx_, colPtr_[j], rowIdx, colPtr[i], len);
+            System.arraycopy(values_, colPtr_[j], values, colPtr[i], len);
+        }
+        // columns in the order of their first row, by counting sort
+        int[] first = new int[m_];
+        int[] start = new int[m_+1];
+        for (int i=0; i<m_; i++) {
+            first[i] = m_-1;
+            for (int p=colPtr[i]; p<colPtr[i+1]; p++) first[i] = Math.min(first[i], rowIdx[p]);
+            start[first[i]+1]++;
+        }
+        for (int r=0; r<m_; r++) start[r+1] += start[r];
+        int[] q = new int[m_];
+        for (int i=0; i<m_; i++) q[start[first[i]]++] = i;
+        lu_ = new SparseLU(new SparseMatrix(m_, m_, colPtr, rowIdx, values), q);
+        System.arraycopy(b_, 0, xB_, 0, m_);
+        ftran(xB_);
+    }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
@@ -0,0 +1,355 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac SparseLU.java
+ *  Execution:    java SparseLU
+ *  Dependencies: SparseMatrix.java
+ *
+ *  Sparse LU decomposition of a square matrix A in compressed-column
+ *  storage, such that P*A*Q = L*U where L is unit lower triangular, U is
+ *  upper triangular, P is the row permutation chosen by partial pivoting
+ *  and Q is a column ordering.
+ *
+ *  A decomposition can be recomputed in place for another matrix with
+ *  the same nonzero pattern (refactor), keeping the column ordering and
+ *  the storage of the factors, and solve can write into a caller-owned
+ *  array, so that repeated analyses of one truss allocate nothing.
+ *
+ *  By default the columns are taken in their natural order. The force
+ *  projection matrices of this package list the elements in the order of
+ *  their start nodes, which the generators number level by level, so in
+ *  that order partial pivoting eliminates the joints one level after the
+ *  other and the factors of a Michell truss hold about 40 entries per DOF
+ *  at any size. Orderings computed on the pattern of A'*A (minimum degree
+ *  and the like) bound the fill for any pivot sequence, but on these
+ *  matrices they cost more time than the factorization and give several
+ *  times the fill; other orderings can be passed in. The numerical
+ *  factorization is the left-looking
+ *  algorithm of Gilbert and Peierls, which does work proportional to the
+ *  number of floating point operations (see T. Davis, "Direct Methods for
+ *  Sparse Linear Systems", SIAM, 2006).
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.Arrays;
+
+public class SparseLU {
+
+    private final int n_;          // matrix dimension
+    private final int[] q_;        // column ordering, column k of P*A*Q is column q_[k] of A
+    private final int[] pinv_;     // inverse row permutation, row i of A is row pinv_[i] of P*A*Q
+    private int[] Lp_, Li_;        // L factor (unit diagonal stored first in each column)
+    private double[] Lx_;
+    private int[] Up_, Ui_;        // U factor (diagonal stored last in each column)
+    private double[] Ux_;
+    private final double[] x_;     // dense work vector of factor
+    private final int[] xi_;       // nonzero pattern of x_ (stack, top..n-1)
+    private final int[] pstack_;   // dfs work stack
+    private final int[] mark_;     // dfs marks, valid when equal to k+1
+    private final double[] w_;     // work vector of solve(b, x)
+
+    /**
+     *  Computes the LU decomposition of A with the columns in their
+     *  natural order.
+     *
+     *  @throws IllegalArgumentException if A is not square
+     *  @throws RuntimeException if A is singular
+     */
+    public SparseLU(final SparseMatrix A) {
+        this(A, naturalOrder(A.cols()));
+    }
+
+    /**
+     *  Computes the LU decomposition of A using the given column ordering q.
+     *
+     *  @throws IllegalArgumentException if A is not square
+     *  @throws RuntimeException if A is singular
+     */
+    public SparseLU(final SparseMatrix A, final int[] q) {
+        if (A.rows() != A.cols())
+            throw new IllegalArgumentException("Matrix must be square.");
+        n_ = A.cols();
+        if (q.length != n_)
+            throw new IllegalArgumentException("Column ordering has wrong length.");
+        q_ = q;
+        pinv_ = new int[n_];
+        x_ = new double[n_];
+        xi_ = new int[n_];
+        pstack_ = new int[n_];
+        mark_ = new int[n_];
+        w_ = new double[n_];
+        factor(A);
+    }
+
+    /**
+     *  Recomputes the decomposition for a matrix A of the same dimension,
+     *  keeping the column ordering and reusing the storage of the factors
+     *  (which only grows if the new factors need more room).
+     *
+     *  @throws IllegalArgumentException if A has a different dimension
+     *  @throws RuntimeException if A is singular
+     */
+    public void refactor(final SparseMatrix A) {
+        if (A.rows() != n_ || A.cols() != n_)
+            throw new IllegalArgumentException("Matrix dimensions must agree.");
+        factor(A);
+    }
+
+    // G E T T E R S
+    public int         N() {  return n_;  }
+    public int[] ordering() {  return q_;  }
+    public int       nnzL() {  return Lp_[n_];  }
+    public int       nnzU() {  return Up_[n_];  }
+
+    /**
+     *  Solves A*x = b.
+     *
+     *  @return x, a new array
+     */
+    public double[] solve(final double[] b) {
+        return solve(b, new double[n_], new double[n_]);
+    }
+
+    /**
+     *  Solves A*x = b into the given array x (which may be b itself),
+     *  without allocating. Uses a work vector of this decomposition, so
+     *  concurrent calls on the same decomposition must use solve(b).
+     *
+     *  @return x
+     */
+    public double[] solve(final double[] b, double[] x) {
+        if (x.length != n_) throw new IllegalArgumentException("Matrix row dimensions must agree.");
+        return solve(b, x, w_);
+    }
+
+    private double[] solve(final double[] b, double[] x, double[] w) {
+        if (b.length != n_) throw new IllegalArgumentException("Matrix row dimensions must agree.");
+        for (int i=0; i<n_; i++) w[pinv_[i]] = b[i];   // w = P*b
+        lsolve(w);                                     // w = L\w
+        usolve(w);                                     // w = U\w
+        for (int k=0; k<n_; k++) x[q_[k]] = w[k];      // x = Q*w
+        return x;
+    }
+
+    /**
+     *  Solves A'*x = b, the transposed system, with the same decomposition
+     *  (U'*L'*P*x = Q'*b).
+     *
+     *  @return x, a new array
+     */
+    public double[] solveTranspose(final double[] b) {
+        return solveTranspose(b, new double[n_], new double[n_]);
+    }
+
+    /**
+     *  Solves A'*x = b into the given array x (which may be b itself),
+     *  without allocating, with the same restriction as solve(b, x).
+     *
+     *  @return x
+     */
+    public double[] solveTranspose(final double[] b, double[] x) {
+        if (x.length != n_) throw new IllegalArgumentException("Matrix row dimensions must agree.");
+        return solveTranspose(b, x, w_);
+    }
+
+    private double[] solveTranspose(final double[] b, double[] x, double[] w) {
+        if (b.length != n_) throw new IllegalArgumentException("Matrix row dimensions must agree.");
+        for (int k=0; k<n_; k++) w[k] = b[q_[k]];      // w = Q'*b
+        utsolve(w);                                    // w = U'\w
+        ltsolve(w);                                    // w = L'\w
+        for (int i=0; i<n_; i++) x[i] = w[pinv_[i]];   // x = P'*w
+        return x;
+    }
+
+    /**
+     *  Numerical factorization (left-looking, with partial pivoting).
+     */
+    private void factor(final SparseMatrix A) {
+        int n = n_;
+        int[] Ap = A.colPtr();
+        int[] Ai = A.rowIdx();
+        double[] Ax = A.values();
+
+        if (Lp_ == null) {
+            int lnzmax = 4*Ap[n] + n;
+            int unzmax = 4*Ap[n] + n;
+            Lp_ = new int[n+1]; Li_ = new int[lnzmax]; Lx_ = new double[lnzmax];
+            Up_ = new int[n+1]; Ui_ = new int[unzmax]; Ux_ = new double[unzmax];
+        }
+
+        double[] x = x_;
+        int[] xi = xi_;
+        int[] pstack = pstack_;
+        int[] mark = mark_;
+        Arrays.fill(mark, 0);
+        Arrays.fill(pinv_, -1);
+
+        int lnz = 0, unz = 0;
+        for (int k=0; k<n; k++) {
+            Lp_[k] = lnz;
+            Up_[k] = unz;
+            if (lnz + n > Li_.length) {
+                int size = 2*Li_.length + n;
+                Li_ = Arrays.copyOf(Li_, size);
+                Lx_ = Arrays.copyOf(Lx_, size);
+            }
+            if (unz + n > Ui_.length) {
+                int size = 2*Ui_.length + n;
+                Ui_ = Arrays.copyOf(Ui_, size);
+                Ux_ = Arrays.copyOf(Ux_, size);
+            }
+            int col = q_[k];
+
+            // x = L\A(:,col), restricted to its nonzero pattern xi[top..n-1]
+            int top = reach(Ap, Ai, col, xi, pstack, mark, k+1);
+            for (int p=top; p<n; p++) x[xi[p]] = 0;
+            for (int p=Ap[col]; p<Ap[col+1]; p++) x[Ai[p]] = Ax[p];
+            for (int px=top; px<n; px++) {
+                int j = xi[px];
+                int J = pinv_[j];
+                if (J < 0) continue;          // x(j) is not yet pivotal
+                double xj = x[j];
+                for (int p=Lp_[J]+1; p<Lp_[J+1]; p++) {
+                    x[Li_[p]] -= Lx_[p]*xj;
+                }
+            }
+
+            // find the pivot and copy the upper part into U
+            int ipiv = -1;
+            double a = -1;
+            for (int p=top; p<n; p++) {
+                int i = xi[p];
+                if (pinv_[i] < 0) {
+                    double t = Math.abs(x[i]);
+                    if (t > a) {
+                        a = t;
+                        ipiv = i;
+                    }
+                } else {
+                    Ui_[unz] = pinv_[i];
+                    Ux_[unz++] = x[i];
+                }
+            }
+            if (ipiv == -1 || a <= 0)
+                throw new RuntimeException("Matrix is singular.");
+
+            // divide the lower part by the pivot and copy it into L
+            double pivot = x[ipiv];
+            Ui_[unz] = k;
+            Ux_[unz++] = pivot;
+            pinv_[ipiv] = k;
+            Li_[lnz] = ipiv;
+            Lx_[lnz++] = 1;
+            for (int p=top; p<n; p++) {
+                int i = xi[p];
+                if (pinv_[i] < 0) {
+                    Li_[lnz] = i;
+                    Lx_[lnz++] = x[i]/pivot;
+                }
+                x[i] = 0;
+            }
+        }
+        Lp_[n] = lnz;
+        Up_[n] = unz;
+        for (int p=0; p<lnz; p++) Li_[p] = pinv_[Li_[p]];  // L in pivot order
+    }
+
+    /**
+     *  Computes the nonzero pattern of L\A(:,col) in topological order by a
+     *  depth-first search in the graph of the columns of L computed so far.
+     *
+     *  @return top, the pattern is stored in xi[top..n-1]
+     */
+    private int reach(int[] Ap, int[] Ai, int col, int[] xi, int[] pstack, int[] mark, int stamp) {
+        int top = n_;
+        for (int p=Ap[col]; p<Ap[col+1]; p++) {
+            int root = Ai[p];
+            if (mark[root] == stamp) continue;
+            // iterative dfs from root; the recursion stack lives in xi[0..head]
+            int head = 0;
+            xi[0] = root;
+            while (head >= 0) {
+                int j = xi[head];
+                int jnew = pinv_[j];
+                if (mark[j] != stamp) {
+                    mark[j] = stamp;
+                    pstack[head] = (jnew < 0) ? 0 : Lp_[jnew];
+                }
+                boolean done = true;
+                int p2 = (jnew < 0) ? 0 : Lp_[jnew+1];
+                for (int pp=pstack[head]; pp<p2; pp++) {
+                    int i = Li_[pp];
+                    if (mark[i] == stamp) continue;
+                    pstack[head] = pp;
+                    xi[++head] = i;
+                    done = false;
+                    break;
+                }
+                if (done) {
+                    head--;
+                    xi[--top] = j;
+                }
+            }
+        }
+        return top;
+    }
+
+    // solves L*x = b in place, L unit lower triangular
+    private void lsolve(double[] x) {
+        for (int j=0; j<n_; j++) {
+            double xj = x[j];
+            if (xj == 0) continue;
+            for (int p=Lp_[j]+1; p<Lp_[j+1]; p++) {
+                x[Li_[p]] -= Lx_[p]*xj;
+            }
+        }
+    }
+
+    // solves U*x = b in place, U upper triangular
+    private void usolve(double[] x) {
+        for (int j=n_-1; j>=0; j--) {
+            x[j] /= Ux_[Up_[j+1]-1];
+            double xj = x[j];
+            if (xj == 0) continue;
+            for (int p=Up_[j]; p<Up_[j+1]-1; p++) {
+                x[Ui_[p]] -= Ux_[p]*xj;
+            }
+        }
+    }
+
+    // solves U'*x = b in place
+    private void utsolve(double[] x) {
+        for (int j=0; j<n_; j++) {
+            double xj = x[j];
+            for (int p=Up_[j]; p<Up_[j+1]-1; p++) {
+                xj -= Ux_[p]*x[Ui_[p]];
+            }
+            x[j] = xj/Ux_[Up_[j+1]-1];
+        }
+    }
+
+    // solves L'*x = b in place, L unit lower triangular
+    private void ltsolve(double[] x) {
+        for (int j=n_-1; j>=0; j--) {
+            double xj = x[j];
+            for (int p=Lp_[j]+1; p<Lp_[j+1]; p++) {
+                xj -= Lx_[p]*x[Li_[p]];
+            }
+            x[j] = xj;
+        }
+    }
+
+    /**
+     *  Natural ordering 0, 1, ..., n-1 of n columns.
+     */
+    public static int[] naturalOrder(int n) {
+        int[] q = new int[n];
+        for (int k=0; k<n; k++) q[k] = k;
+        return q;
+    }
+
+    /**   Client test and sample execution.  */
+    public static void main(String[] args) {}
+
+}
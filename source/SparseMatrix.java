@@ -0,0 +1,86 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac SparseMatrix.java
+ *  Execution:    java SparseMatrix
+ *  Dependencies: None
+ *
+ *  A sparse m-by-n matrix in compressed-column storage (CCS): the row
+ *  indices and values of column j are stored in rowIdx[colPtr[j] ..
+ *  colPtr[j+1]-1] and values[colPtr[j] .. colPtr[j+1]-1]. Row indices
+ *  within a column need not be sorted, but must not repeat.
+ *
+ *  This is the storage used by the sparse solvers in StructuralAnalysis,
+ *  where the force projection matrix of a truss has at most four nonzeros
+ *  per column.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+public class SparseMatrix {
+
+    private final int m_, n_;        // number of rows, columns
+    private final int[] colPtr_;     // column pointers (size n+1)
+    private final int[] rowIdx_;     // row indices (size nnz)
+    private final double[] values_;  // numerical values (size nnz)
+
+    /**
+     *  Initializes a sparse matrix from its compressed-column arrays.
+     *  The arrays are used as is (not copied).
+     *
+     *  @throws IllegalArgumentException if the arrays are inconsistent
+     */
+    public SparseMatrix(int m, int n, int[] colPtr, int[] rowIdx, double[] values) {
+        if (m < 0 || n < 0)
+            throw new IllegalArgumentException("Matrix dimensions must be nonnegative");
+        if (colPtr.length != n+1 || colPtr[n] > rowIdx.length || colPtr[n] > values.length)
+            throw new IllegalArgumentException("Compressed-column arrays are inconsistent");
+        m_ = m;
+        n_ = n;
+        colPtr_ = colPtr;
+        rowIdx_ = rowIdx;
+        values_ = values;
+    }
+
+    // G E T T E R S
+    public int        rows() {  return m_;  }
+    public int        cols() {  return n_;  }
+    public int         nnz() {  return colPtr_[n_];  }
+    public int[]    colPtr() {  return colPtr_;  }
+    public int[]    rowIdx() {  return rowIdx_;  }
+    public double[] values() {  return values_;  }
+
+    /**
+     *  Computes y = A*x.
+     */
+    public double[] times(final double[] x) {
+        if (x.length != n_) throw new IllegalArgumentException("Matrix dimensions must agree.");
+        double[] y = new double[m_];
+        for (int j=0; j<n_; j++) {
+            double xj = x[j];
+            if (xj == 0) continue;
+            for (int p=colPtr_[j]; p<colPtr_[j+1]; p++) {
+                y[rowIdx_[p]] += values_[p]*xj;
+            }
+        }
+        return y;
+    }
+
+    /**
+     *  Returns a string representation of the matrix as (row, col) value triplets.
+     */
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        s.append(m_ + "-by-" + n_ + ", " + nnz() + " nonzeros \n");
+        for (int j=0; j<n_; j++) {
+            for (int p=colPtr_[j]; p<colPtr_[j+1]; p++) {
+                s.append("(" + rowIdx_[p] + ", " + j + ") " + values_[p] + "\n");
+            }
+        }
+        return s.toString();
+    }
+
+    /**   Client test and sample execution.  */
+    public static void main(String[] args) {}
+
+}
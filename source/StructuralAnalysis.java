@@ -1,7 +1,10 @@
+package mit4s48;
+
 /*************************************************************************
  *  Compilation:  javac StructuralAnalysis.java
  *  Execution:    java StructuralAnalysis
- *  Dependencies: Jama.Matrix
+ *  Dependencies: Jama.Matrix  SparseMatrix.java  SparseLU.java
+ *                JointFactorization.java  JointWorkspace.java  Metrics.java
  *
  *  A StructuralAnalysis class with static methods for structural analysis 
  *  of truss structures represented as matrices.
@@ -10,6 +13,16 @@
  *  1. An implementation of the method of joints for calculating unknown forces
  *     in a simple truss structure. Calculates element forces and reaction
  *     forces. 
+ *  2. A sparse variant of the method of joints for large trusses, which 
+ *     stores the force projection matrix in compressed-column form and 
+ *     solves it with a sparse LU decomposition. To solve many
+ *     load cases on the same truss, factor it once with JointFactorization.
+ *     To analyze a truss repeatedly (for instance while its geometry
+ *     changes), solve it from primitive arrays into a JointWorkspace, which
+ *     allocates nothing after the first analysis.
+ *  3. Sensitivities of the performance sigmaFL = Sum |f_e|*l_e with respect
+ *     to the node coordinates, by the adjoint method: one extra solve of
+ *     the transposed system with the same factorization.
  *  
  *  @author Alexandros Haridis, Digital Structures, MIT
  *************************************************************************/
@@ -69,7 +82,7 @@ public class StructuralAnalysis {
             double n1y = N.get(n1, 1);
             double n2x = N.get(n2, 0);
             double n2y = N.get(n2, 1);
-            double dist = Math.pow(((n2x-n1x)*(n2x-n1x) + (n2y-n1y)*(n2y-n1y)), 0.5);
+            double dist = Math.sqrt((n2x-n1x)*(n2x-n1x) + (n2y-n1y)*(n2y-n1y));
             double cosa = (n2x-n1x)/dist;
             double sina = (n2y-n1y)/dist;
             A.set(2*n1, i, cosa);
@@ -98,6 +111,253 @@ public class StructuralAnalysis {
 	out[1] = R;
 	return out;
     }
+
+    /**
+     * Method of joints on primitive inputs, assembled and solved in a
+     * caller-owned workspace. The force projection matrix is assembled in
+     * compressed-column form into the buffers of the workspace and
+     * factored there, and the solution is written into x, so that repeated
+     * analyses of a truss with the same topology and supports allocate
+     * nothing.
+     *
+     * @param xy, from, to, S, Q = as in SparseJointMethod(double[], int[], int[], int[], double[])
+     * @param ws = workspace sized for the truss
+     * @param x = solution, of length (number of DOFs): the element forces
+     *        followed by the support reactions
+     * @return x
+     * @see JointWorkspace
+     */
+    public static double[] JointMethod(double[] xy, int[] from, int[] to, int[] S, double[] Q,
+                                       JointWorkspace ws, double[] x) {
+        return ws.solve(xy, from, to, S, Q, x);
+    }
+
+    /**
+     * Sparse implementation of the method of joints. Same inputs and outputs
+     * as JointMethod, but the force projection matrix A is assembled in 
+     * compressed-column form (at most four nonzeros per column) and solved 
+     * with a sparse LU decomposition, so time and memory grow close to 
+     * linearly with the number of elements instead of cubically.
+     *
+     * @see #JointMethod(Matrix, Matrix, Matrix, Matrix)
+     * @see JointFactorization
+     */
+    public static Matrix[] SparseJointMethod(Matrix N, Matrix T, Matrix S, Matrix L) {
+        return new JointFactorization(N, T, S).solve(L);
+    }
+
+    /**
+     * Sparse method of joints on primitive inputs, read directly without
+     * building Jama matrices first.
+     *
+     * @param xy = node coordinates, X and Y of node n at xy[2n] and xy[2n+1]
+     * @param from, to = truss topology, element e goes from node from[e] to node to[e]
+     * @param S = support definition, the fixity s is at node S[2s] in direction
+     *        S[2s+1] = 1 (X) or 2 (Y)
+     * @param Q = load vector, loads on node n in the X and Y directions at Q[2n]
+     *        and Q[2n+1]
+     * @return array 2x1 containing the element forces F and support reactions R,
+     *        as returned by JointMethod
+     */
+    public static Matrix[] SparseJointMethod(double[] xy, int[] from, int[] to, int[] S, double[] Q) {
+        return splitForces(new JointFactorization(xy, from, to, S).solveVector(Q), from.length);
+    }
+
+    /**
+     * Assembles the force projection matrix A of the method of joints in 
+     * compressed-column form from Jama inputs.
+     *
+     * @see #projectionMatrix(double[], int[], int[], int[])
+     */
+    static SparseMatrix projectionMatrix(Matrix N, Matrix T, Matrix S) {
+        int nNodes    = N.getRowDimension();
+        int nFixities = S.getRowDimension();
+        int nElements = T.getRowDimension();
+        double[] xy = new double[2*nNodes];
+        for (int n=0; n<nNodes; n++) {
+            xy[2*n]   = N.get(n, 0);
+            xy[2*n+1] = N.get(n, 1);
+        }
+        int[] from = new int[nElements];
+        int[] to = new int[nElements];
+        for (int i=0; i<nElements; i++) {
+            from[i] = (int)T.get(i, 0);
+            to[i]   = (int)T.get(i, 1);
+        }
+        int[] fixities = new int[2*nFixities];
+        for (int i=0; i<nFixities; i++) {
+            fixities[2*i]   = (int)S.get(i, 0);
+            fixities[2*i+1] = (int)S.get(i, 1);
+        }
+        return projectionMatrix(xy, from, to, fixities);
+    }
+
+    /**
+     * Assembles the force projection matrix A of the method of joints in 
+     * compressed-column form: one column per element with the direction
+     * cosines at its two nodes, followed by one column per fixity.
+     * Inputs as in SparseJointMethod(double[], int[], int[], int[], double[]).
+     *
+     * @throws IllegalArgumentException if the truss is indeterminate
+     */
+    static SparseMatrix projectionMatrix(double[] xy, int[] from, int[] to, int[] S) {
+        int nNodes    = xy.length/2;
+        int nFixities = S.length/2;
+        int nElements = from.length;
+        int dofs      = nNodes*2;
+        if (dofs != nElements+nFixities)
+            throw new IllegalArgumentException("The truss is indeterminate");
+
+        int[] colPtr = new int[dofs+1];
+        int[] rowIdx = new int[4*nElements+nFixities];
+        double[] values = new double[4*nElements+nFixities];
+        assemble(xy, from, to, S, colPtr, rowIdx, values);
+        return new SparseMatrix(dofs, dofs, colPtr, rowIdx, values);
+    }
+
+    /**
+     * Assembles the force projection matrix into existing compressed-column
+     * arrays of sizes dofs+1 and 4*(number of elements)+(number of fixities),
+     * without allocating.
+     *
+     * @return true if the nonzero pattern (the row indices) differs from the
+     *         one the arrays held before
+     */
+    static boolean assemble(double[] xy, int[] from, int[] to, int[] S,
+                            int[] colPtr, int[] rowIdx, double[] values) {
+        long start = Metrics.start();
+        int nElements = from.length;
+        int nFixities = S.length/2;
+        int dofs = nElements+nFixities;
+        int changed = 0;
+        int nz = 0;
+        for (int i=0; i<nElements; i++) {
+            int n1 = from[i];
+            int n2 = to[i];
+            double dx = xy[2*n2]   - xy[2*n1];
+            double dy = xy[2*n2+1] - xy[2*n1+1];
+            double dist = Math.sqrt(dx*dx + dy*dy);
+            double cosa = dx/dist;
+            double sina = dy/dist;
+            changed |= rowIdx[nz] ^ 2*n1;
+            changed |= rowIdx[nz+2] ^ 2*n2;
+            colPtr[i] = nz;
+            rowIdx[nz] = 2*n1;   values[nz++] = cosa;
+            rowIdx[nz] = 2*n1+1; values[nz++] = sina;
+            rowIdx[nz] = 2*n2;   values[nz++] = -cosa;
+            rowIdx[nz] = 2*n2+1; values[nz++] = -sina;
+        }
+        for (int i=0; i<nFixities; i++) {
+            int n = S[2*i];
+            int dir = S[2*i+1];
+            if (dir != 1 && dir != 2)
+                throw new IllegalArgumentException("Fixity direction must be 1 (X) or 2 (Y)");
+            int row = (dir == 1) ? 2*n : 2*n+1;
+            changed |= rowIdx[nz] ^ row;
+            colPtr[nElements+i] = nz;
+            rowIdx[nz] = row;
+            values[nz++] = 1;
+        }
+        colPtr[dofs] = nz;
+        Metrics.ASSEMBLY.stop(start);
+        return changed != 0;
+    }
+
+    /**
+     * Gradient of the performance sigmaFL = Sum |f_e|*l_e with respect to
+     * the node coordinates, under fixed supports and loads. Besides the
+     * analysis itself it costs one solve of the adjoint system
+     * A'*lambda = g, with g_e = sign(f_e)*l_e, using the same factorization.
+     * Where a force is zero sigmaFL is not differentiable; its sign is
+     * taken as zero.
+     *
+     * @param xy, from, to, S, Q = as in SparseJointMethod(double[], int[], int[], int[], double[])
+     * @return d(sigmaFL)/d(xy), with the derivatives with respect to X and Y
+     *        of node n at 2n and 2n+1
+     */
+    public static double[] sigmaFLGradient(double[] xy, int[] from, int[] to, int[] S, double[] Q) {
+        JointFactorization A = new JointFactorization(xy, from, to, S);
+        double[] x = A.solveVector(Q);
+        double[] lambda = A.solveTransposeVector(adjointLoad(xy, from, to, x, new double[x.length]));
+        return sigmaFLGradient(xy, from, to, x, lambda, new double[xy.length]);
+    }
+
+    /**
+     * Right-hand side g of the adjoint system for sigmaFL: sign(f_e)*l_e for
+     * the element forces, zero for the reactions.
+     *
+     * @return g
+     */
+    static double[] adjointLoad(double[] xy, int[] from, int[] to, double[] x, double[] g) {
+        int nElements = from.length;
+        for (int e=0; e<nElements; e++) {
+            double dx = xy[2*to[e]]   - xy[2*from[e]];
+            double dy = xy[2*to[e]+1] - xy[2*from[e]+1];
+            g[e] = Math.signum(x[e])*Math.sqrt(dx*dx + dy*dy);
+        }
+        for (int i=nElements; i<g.length; i++) g[i] = 0;
+        return g;
+    }
+
+    /**
+     * Assembles d(sigmaFL)/d(xy) from the solution x of A*x = -Q and the
+     * adjoint solution lambda. With c, s the direction cosines and l the
+     * length of element e, moving its end node changes sigmaFL directly
+     * through l (|f_e|*(c, s)) and through the forces, by -f_e*lambda'*dA_e;
+     * the start node gets the opposite derivatives.
+     *
+     * @return grad
+     */
+    static double[] sigmaFLGradient(double[] xy, int[] from, int[] to, double[] x, double[] lambda, double[] grad) {
+        for (int i=0; i<grad.length; i++) grad[i] = 0;
+        for (int e=0; e<from.length; e++) {
+            int n1 = from[e];
+            int n2 = to[e];
+            double dx = xy[2*n2]   - xy[2*n1];
+            double dy = xy[2*n2+1] - xy[2*n1+1];
+            double l = Math.sqrt(dx*dx + dy*dy);
+            double c = dx/l;
+            double s = dy/l;
+            double f = x[e];
+            double dlx = lambda[2*n1]   - lambda[2*n2];
+            double dly = lambda[2*n1+1] - lambda[2*n2+1];
+            double k = f*(s*dlx - c*dly)/l;
+            double gx = Math.abs(f)*c - s*k;
+            double gy = Math.abs(f)*s + c*k;
+            grad[2*n2]   += gx;
+            grad[2*n2+1] += gy;
+            grad[2*n1]   -= gx;
+            grad[2*n1+1] -= gy;
+        }
+        return grad;
+    }
+
+    /**
+     * Expands the load definition L into a load vector of length dofs, with
+     * the X and Y loads of node n at 2n and 2n+1.
+     */
+    static double[] loadVector(Matrix L, int dofs) {
+        double[] Q = new double[dofs];
+        int nLoadedNodes = L.getRowDimension();
+        for (int i=0; i<nLoadedNodes; i++) {
+            int n = (int)L.get(i, 0);
+            Q[2*n]   = L.get(i, 1);
+            Q[2*n+1] = L.get(i, 2);
+        }
+        return Q;
+    }
+
+    // splits a solution of A*x = -Q into element forces F and reactions R
+    static Matrix[] splitForces(double[] result, int nElements) {
+        Matrix F = new Matrix(nElements, 1);
+        Matrix R = new Matrix(result.length-nElements, 1);
+        for (int i=0; i<nElements; i++) F.set(i, 0, result[i]);
+        for (int i=nElements; i<result.length; i++) R.set(i-nElements, 0, result[i]);
+	Matrix[] out = new Matrix[2];
+	out[0] = F;
+	out[1] = R;
+	return out;
+    }
 	
     public static void main(String[] args) {}
 
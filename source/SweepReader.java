@@ -0,0 +1,171 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac SweepReader.java
+ *  Execution:    java SweepReader
+ *  Dependencies: SweepWriter.java
+ *
+ *  Reads a sweep file written by SweepWriter in place: the file is mapped
+ *  read-only, in regions of whole blocks, and every accessor reads the
+ *  mapped bytes directly, so nothing is parsed or copied into the heap
+ *  and files larger than the heap can be scanned. Since the file is
+ *  columnar, a scan of one field touches the pages of that column alone.
+ *  forces and reactions return views of the mapped bytes of one record.
+ *
+ *  A reader is safe for use by several threads, since it only reads by
+ *  absolute position.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class SweepReader implements Closeable {
+
+    private static final long REGION = 1L << 30;   // bytes mapped at a time
+
+    private final RandomAccessFile file_;
+    private final int recordSize_;
+    private final int forceCapacity_;
+    private final int reactionCapacity_;
+    private final long count_;                     // number of records
+    private final int blockRecords_;               // records per block
+    private final int lastRecords_;                // records of the last block
+    private final int regionBlocks_;               // blocks per mapped region
+    private final MappedByteBuffer[] regions_;
+
+    /**
+     *  Opens and maps a sweep file.
+     *
+     *  @throws IOException if the file cannot be read or is not a complete
+     *          sweep file
+     */
+    public SweepReader(File file) throws IOException {
+        file_ = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = file_.getChannel();
+            if (channel.size() < SweepWriter.HEADER) throw new IOException("Not a sweep file");
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, SweepWriter.HEADER);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != SweepWriter.MAGIC) throw new IOException("Not a sweep file");
+            if (header.getInt(4) != SweepWriter.VERSION)
+                throw new IOException("Unsupported sweep file version " + header.getInt(4));
+            recordSize_ = header.getInt(8);
+            forceCapacity_ = header.getInt(12);
+            reactionCapacity_ = header.getInt(16);
+            blockRecords_ = header.getInt(20);
+            count_ = header.getLong(24);
+            if (recordSize_ != SweepWriter.FIXED + 8*(forceCapacity_ + reactionCapacity_)
+                || blockRecords_ < 1 || (long)blockRecords_*recordSize_ > Integer.MAX_VALUE
+                || channel.size() < SweepWriter.HEADER + count_*recordSize_)
+                throw new IOException("Corrupt or incomplete sweep file");
+
+            long blocks = (count_ + blockRecords_ - 1)/blockRecords_;
+            lastRecords_ = (int)(count_ - (blocks-1)*blockRecords_);
+            long blockSize = (long)blockRecords_*recordSize_;
+            regionBlocks_ = (int)Math.max(1, REGION/blockSize);
+            int regions = (int)((blocks + regionBlocks_ - 1)/regionBlocks_);
+            regions_ = new MappedByteBuffer[regions];
+            for (int k=0; k<regions; k++) {
+                long first = (long)k*regionBlocks_*blockRecords_;
+                long records = Math.min((long)regionBlocks_*blockRecords_, count_ - first);
+                regions_[k] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                          SweepWriter.HEADER + first*recordSize_, records*recordSize_);
+                regions_[k].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException e) {
+            file_.close();
+            throw e;
+        }
+    }
+
+    // G E T T E R S
+    public long             size() {  return count_;  }
+    public int     forceCapacity() {  return forceCapacity_;  }
+    public int  reactionCapacity() {  return reactionCapacity_;  }
+
+    public int            ne(long i) {  return region(i).getInt(offset(i, 0, 4));  }
+    public int   numElements(long i) {  return region(i).getInt(offset(i, 4, 4));  }
+    public float           h(long i) {  return region(i).getFloat(offset(i, 8, 4));  }
+    public float           L(long i) {  return region(i).getFloat(offset(i, 12, 4));  }
+    public float          Qx(long i) {  return region(i).getFloat(offset(i, 16, 4));  }
+    public float          Qy(long i) {  return region(i).getFloat(offset(i, 20, 4));  }
+    public double       gama(long i) {  return region(i).getDouble(offset(i, 24, 8));  }
+    public double    sigmaFL(long i) {  return region(i).getDouble(offset(i, 32, 8));  }
+
+    /**
+     *  Force of element e (from 0 to forceCapacity-1) in record i.
+     */
+    public double force(long i, int e) {
+        if (e < 0 || e >= forceCapacity_) throw new IndexOutOfBoundsException("element " + e);
+        return region(i).getDouble(offset(i, SweepWriter.FIXED, 8*forceCapacity_) + 8*e);
+    }
+
+    /**
+     *  Reaction r (from 0 to reactionCapacity-1) in record i.
+     */
+    public double reaction(long i, int r) {
+        if (r < 0 || r >= reactionCapacity_) throw new IndexOutOfBoundsException("reaction " + r);
+        return region(i).getDouble(offset(i, SweepWriter.FIXED + 8*forceCapacity_, 8*reactionCapacity_) + 8*r);
+    }
+
+    /**
+     *  Read-only view of the element forces of record i (numElements
+     *  values), on the mapped bytes.
+     */
+    public DoubleBuffer forces(long i) {
+        return view(i, offset(i, SweepWriter.FIXED, 8*forceCapacity_), numElements(i));
+    }
+
+    /**
+     *  Read-only view of the reactions of record i (reactionCapacity
+     *  values), on the mapped bytes.
+     */
+    public DoubleBuffer reactions(long i) {
+        return view(i, offset(i, SweepWriter.FIXED + 8*forceCapacity_, 8*reactionCapacity_), reactionCapacity_);
+    }
+
+    /**
+     *  Releases the file. The mapped regions stay valid until they are
+     *  garbage collected.
+     */
+    public void close() throws IOException {
+        file_.close();
+    }
+
+    private DoubleBuffer view(long i, int p, int length) {
+        ByteBuffer b = region(i).duplicate();
+        b.position(p);
+        b.limit(p + 8*length);
+        return b.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().asReadOnlyBuffer();
+    }
+
+    private MappedByteBuffer region(long i) {
+        if (i < 0 || i >= count_) throw new IndexOutOfBoundsException("record " + i);
+        return regions_[(int)(i/blockRecords_/regionBlocks_)];
+    }
+
+    // position in its region of the value of record i in the column of the
+    // field at offset at of the record, width bytes wide
+    private int offset(long i, int at, int width) {
+        long block = i/blockRecords_;
+        int j = (int)(i%blockRecords_);
+        int n = (block == (count_-1)/blockRecords_) ? lastRecords_ : blockRecords_;
+        long start = (block%regionBlocks_)*blockRecords_*recordSize_;
+        return (int)(start + (long)n*at + (long)j*width);
+    }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
@@ -0,0 +1,119 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac SweepTable.java
+ *  Execution:    java SweepTable
+ *  Dependencies: None
+ *
+ *  A compact table with the results of a design-space sweep over Michell
+ *  trusses. There is one row per (ne, h, L) configuration, stored column
+ *  by column in primitive arrays: the parameters ne, h and L, and the
+ *  results gama, sigmaFL, number of nodes, number of elements and the
+ *  maximum absolute element force.
+ *
+ *  Rows are laid out in the order of the cartesian product of the
+ *  parameter values, with ne varying slowest and L fastest. A row whose
+ *  configuration could not be generated has gama = NaN.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+public class SweepTable {
+
+    private final int     rows_;
+    private final int[]   ne_;        // number of bars
+    private final float[] h_;         // distance between the supports
+    private final float[] L_;         // distance between the supports and the load
+    private final float[] gama_;      // optimized gama (degrees)
+    private final float[] sigmaFL_;   // performance
+    private final int[]   nodes_;     // number of nodes
+    private final int[]   elements_;  // number of elements
+    private final float[] maxForce_;  // maximum absolute element force
+
+    /**
+     *  Initializes a table with one row per combination of the given
+     *  parameter values, and no results.
+     */
+    public SweepTable(final int[] ne, final float[] h, final float[] L) {
+        rows_ = ne.length*h.length*L.length;
+        ne_       = new int[rows_];
+        h_        = new float[rows_];
+        L_        = new float[rows_];
+        gama_     = new float[rows_];
+        sigmaFL_  = new float[rows_];
+        nodes_    = new int[rows_];
+        elements_ = new int[rows_];
+        maxForce_ = new float[rows_];
+        int row = 0;
+        for (int i=0; i<ne.length; i++) {
+            for (int j=0; j<h.length; j++) {
+                for (int k=0; k<L.length; k++) {
+                    ne_[row] = ne[i];
+                    h_[row]  = h[j];
+                    L_[row]  = L[k];
+                    row++;
+                }
+            }
+        }
+    }
+
+    // G E T T E R S
+    public int            size() {  return rows_;  }
+    public int          ne(int r) {  return ne_[r];  }
+    public float         h(int r) {  return h_[r];  }
+    public float         L(int r) {  return L_[r];  }
+    public float      gama(int r) {  return gama_[r];  }
+    public float   sigmaFL(int r) {  return sigmaFL_[r];  }
+    public int       nodes(int r) {  return nodes_[r];  }
+    public int    elements(int r) {  return elements_[r];  }
+    public float  maxForce(int r) {  return maxForce_[r];  }
+    public boolean   valid(int r) {  return !Float.isNaN(gama_[r]);  }
+
+    // S E T T E R S
+
+    // records the results of row r
+    void set(int r, float gama, float sigmaFL, int nodes, int elements, float maxForce) {
+        gama_[r]     = gama;
+        sigmaFL_[r]  = sigmaFL;
+        nodes_[r]    = nodes;
+        elements_[r] = elements;
+        maxForce_[r] = maxForce;
+    }
+
+    // records that row r could not be generated
+    void setInvalid(int r) {
+        set(r, Float.NaN, Float.NaN, 0, 0, Float.NaN);
+    }
+
+    /**
+     *  Returns the row with the smallest sigmaFL, or -1 if no row is valid.
+     */
+    public int best() {
+        int best = -1;
+        for (int r=0; r<rows_; r++) {
+            if (valid(r) && (best < 0 || sigmaFL_[r] < sigmaFL_[best])) best = r;
+        }
+        return best;
+    }
+
+    /**
+     *  Returns a string representation of the table, one row per line.
+     */
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        s.append("ne\th\tL\tgama\tsigmaFL\tnodes\telements\tmaxForce\n");
+        for (int r=0; r<rows_; r++) {
+            s.append(ne_[r]).append('\t').append(h_[r]).append('\t').append(L_[r]).append('\t')
+             .append(gama_[r]).append('\t').append(sigmaFL_[r]).append('\t')
+             .append(nodes_[r]).append('\t').append(elements_[r]).append('\t')
+             .append(maxForce_[r]).append('\n');
+        }
+        return s.toString();
+    }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
@@ -0,0 +1,249 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac SweepWriter.java
+ *  Execution:    java SweepWriter
+ *  Dependencies: MichellResult.java  MichellStructure.java  Truss.java
+ *                SweepReader.java  Jama.Matrix
+ *
+ *  Streams the results of a parameter sweep to a binary file, through
+ *  memory-mapped regions of the file: no text formatting, and nothing
+ *  kept in the heap once a record is written. Read it with SweepReader.
+ *
+ *  The file is columnar, little endian: a header followed by blocks of
+ *  records, and within a block each field of the records is a column of
+ *  its own, so that a scan of one field (say sigmaFL) reads only that
+ *  column and never pages in the forces.
+ *
+ *      header (HEADER bytes)
+ *          int    magic "MSWP", version
+ *          int    record size in bytes
+ *          int    force capacity (element forces per record)
+ *          int    reaction capacity (reactions per record)
+ *          int    records per block
+ *          long   number of records
+ *      block of n records (n = records per block, fewer in the last one)
+ *          int    ne[n], number of elements with a force stored[n]
+ *          float  h[n], L[n], Qx[n], Qy[n]
+ *          double gama[n], sigmaFL[n]
+ *          double element forces[n][force capacity] (unused ones are 0)
+ *          double reactions[n][reaction capacity] (unused ones are 0)
+ *
+ *  A column of a field at offset o of the record (in the order above)
+ *  starts at n*o in its block, so the blocks are as large as their
+ *  records and whole blocks can be mapped. A block holds about BLOCK
+ *  bytes, enough for the columns to span several pages each.
+ *
+ *  With capacities 0 a record holds only the parameters, gama and
+ *  sigmaFL (40 bytes). A truss with more elements or reactions than the
+ *  capacities is rejected. The record count in the header is written on
+ *  close, when the last block is compacted to its records; until then it
+ *  is 0.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import Jama.Matrix;
+
+public class SweepWriter implements Closeable {
+
+    static final int MAGIC = 0x5057534d;       // "MSWP" little endian
+    static final int VERSION = 2;
+    static final int HEADER = 32;              // header size in bytes
+    static final int FIXED = 40;               // record size without forces and reactions
+    static final int BLOCK = 4 << 20;          // bytes of a block, about
+    private static final long MAX_RECORD = 64L << 20;  // largest record size
+
+    private final RandomAccessFile file_;
+    private final FileChannel channel_;
+    private final int forceCapacity_;
+    private final int reactionCapacity_;
+    private final int recordSize_;
+    private final int blockRecords_;           // records per block
+    private MappedByteBuffer region_;          // block being written, null before the first record
+    private long regionStart_;                 // index of the first record of the block
+    private long count_;                       // records written
+    private boolean closed_;
+
+    /**
+     *  Creates (or truncates) the file for records with room for the given
+     *  numbers of element forces and reactions.
+     *
+     *  @throws IllegalArgumentException if a capacity is negative
+     *  @throws IOException if the file cannot be created
+     */
+    public SweepWriter(File file, int forceCapacity, int reactionCapacity) throws IOException {
+        if (forceCapacity < 0 || reactionCapacity < 0)
+            throw new IllegalArgumentException("Capacities must be nonnegative");
+        if (FIXED + 8L*(forceCapacity + reactionCapacity) > MAX_RECORD)
+            throw new IllegalArgumentException("Records too large");
+        forceCapacity_ = forceCapacity;
+        reactionCapacity_ = reactionCapacity;
+        recordSize_ = FIXED + 8*(forceCapacity + reactionCapacity);
+        blockRecords_ = Math.max(1, BLOCK/recordSize_);
+        file_ = new RandomAccessFile(file, "rw");
+        file_.setLength(0);
+        channel_ = file_.getChannel();
+        writeHeader();
+    }
+
+    // G E T T E R S
+    public int    forceCapacity() {  return forceCapacity_;  }
+    public int reactionCapacity() {  return reactionCapacity_;  }
+    public int       recordSize() {  return recordSize_;  }
+    public int     blockRecords() {  return blockRecords_;  }
+    public long            size() {  return count_;  }
+
+    /**
+     *  Appends the record of a solved Michell truss, with its element
+     *  forces and reactions up to the capacities.
+     *
+     *  @throws IllegalArgumentException if the truss has more elements or
+     *          reactions than the capacities allow
+     *  @throws IOException if the file cannot grow
+     */
+    public void add(final MichellResult result) throws IOException {
+        Truss truss = result.truss();
+        add(result.ne(), result.h(), result.L(), result.Qx(), result.Qy(), result.gama(),
+            truss.sigmaFL(), truss.forces(), truss.reactions());
+    }
+
+    /**
+     *  Appends a record. F and R are stored only as far as the capacities
+     *  go and may be null when the capacity is 0.
+     *
+     *  @throws IllegalArgumentException if F or R do not fit the capacities
+     *  @throws IOException if the file cannot grow
+     */
+    public void add(int ne, float h, float L, float Qx, float Qy, double gama, double sigmaFL,
+                    final Matrix F, final Matrix R) throws IOException {
+        if (closed_) throw new IllegalStateException("Writer is closed");
+        int nF = (forceCapacity_ == 0 || F == null) ? 0 : F.getRowDimension();
+        int nR = (reactionCapacity_ == 0 || R == null) ? 0 : R.getRowDimension();
+        if (nF > forceCapacity_ || nR > reactionCapacity_)
+            throw new IllegalArgumentException("Truss does not fit the record capacities");
+        if (region_ == null || count_ - regionStart_ == blockRecords_) map(count_);
+
+        MappedByteBuffer b = region_;
+        int n = blockRecords_;
+        int j = (int)(count_ - regionStart_);
+        b.putInt(4*j, ne);
+        b.putInt(4*(n+j), nF);
+        b.putFloat(4*(2*n+j), h);
+        b.putFloat(4*(3*n+j), L);
+        b.putFloat(4*(4*n+j), Qx);
+        b.putFloat(4*(5*n+j), Qy);
+        b.putDouble(8*(3*n+j), gama);
+        b.putDouble(8*(4*n+j), sigmaFL);
+        int p = FIXED*n + 8*forceCapacity_*j;
+        for (int e=0; e<forceCapacity_; e++, p+=8) b.putDouble(p, (e < nF) ? F.get(e, 0) : 0);
+        p = (FIXED + 8*forceCapacity_)*n + 8*reactionCapacity_*j;
+        for (int r=0; r<reactionCapacity_; r++, p+=8) b.putDouble(p, (r < nR) ? R.get(r, 0) : 0);
+        count_++;
+    }
+
+    /**
+     *  Writes the record count, trims the file to the records written and
+     *  closes it.
+     */
+    public void close() throws IOException {
+        if (closed_) return;
+        closed_ = true;
+        try {
+            if (region_ != null) {
+                compact((int)(count_ - regionStart_));
+                region_.force();
+            }
+            region_ = null;
+            writeHeader();
+            channel_.truncate(HEADER + count_*recordSize_);
+            channel_.force(true);
+        } finally {
+            file_.close();
+        }
+    }
+
+    // maps the block starting at the given record
+    private void map(long first) throws IOException {
+        if (region_ != null) region_.force();
+        region_ = channel_.map(FileChannel.MapMode.READ_WRITE, HEADER + first*recordSize_,
+                               (long)blockRecords_*recordSize_);
+        region_.order(ByteOrder.LITTLE_ENDIAN);
+        regionStart_ = first;
+    }
+
+    // moves the columns of the block being written, which holds n records,
+    // to the layout of a block of n records; each column moves down, so
+    // copying in increasing order never overwrites bytes still to be read
+    private void compact(int n) {
+        if (n == blockRecords_) return;
+        int[] offsets = {0, 4, 8, 12, 16, 20, 24, 32, FIXED, FIXED + 8*forceCapacity_, recordSize_};
+        byte[] chunk = new byte[8192];
+        ByteBuffer b = region_.duplicate();
+        for (int c=1; c+1<offsets.length; c++) {
+            int from = offsets[c]*blockRecords_;
+            int to = offsets[c]*n;
+            int length = (offsets[c+1] - offsets[c])*n;
+            for (int k=0; k<length; k+=chunk.length) {
+                int len = Math.min(chunk.length, length-k);
+                b.position(from+k);
+                b.get(chunk, 0, len);
+                b.position(to+k);
+                b.put(chunk, 0, len);
+            }
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        MappedByteBuffer b = channel_.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(0, MAGIC);
+        b.putInt(4, VERSION);
+        b.putInt(8, recordSize_);
+        b.putInt(12, forceCapacity_);
+        b.putInt(16, reactionCapacity_);
+        b.putInt(20, blockRecords_);
+        b.putLong(24, count_);
+        b.force();
+    }
+
+    /**
+     *  Test client and sample execution: sweeps ne, h and L of the Michell
+     *  truss with the standard tip load into a temporary file and reads
+     *  the best configuration back.
+     */
+    public static void main(String[] args) throws IOException {
+        File file = File.createTempFile("michell", ".sweep");
+        file.deleteOnExit();
+        long start = System.nanoTime();
+        SweepWriter out = new SweepWriter(file, 98, 4);
+        for (int na=1; na<=7; na++) {
+            for (int h=4; h<=16; h++) {
+                for (int L=20; L<=60; L+=2) {
+                    out.add(MichellStructure.solve(2*na*na, h, L, 0, MichellStructure.LOAD));
+                }
+            }
+        }
+        out.close();
+        System.out.printf("%d records, %d bytes in %.0f ms%n", out.size(), file.length(), (System.nanoTime()-start)/1e6);
+
+        SweepReader in = new SweepReader(file);
+        long best = 0;
+        for (long i=1; i<in.size(); i++) {
+            if (in.sigmaFL(i) < in.sigmaFL(best)) best = i;
+        }
+        System.out.println("lowest sigmaFL: ne = " + in.ne(best) + ", h = " + in.h(best) + ", L = " + in.L(best)
+                           + ", sigmaFL = " + in.sigmaFL(best) + ", first force = " + in.force(best, 0));
+        in.close();
+    }
+
+}
@@ -0,0 +1,132 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac TopologyCache.java
+ *  Execution:    java TopologyCache
+ *  Dependencies: TrussTopology.java  MichellStructure.java  MirrorSymmetry.java
+ *
+ *  A bounded cache of Michell truss topologies. The topology of a Michell
+ *  truss depends only on its number of bars ne (through the number of
+ *  levels na = sqrt(ne/2)), not on h, L or gama, so it is built once per
+ *  level count and shared by every truss generated with it.
+ *
+ *  The cache holds at most a given number of topologies and of elements
+ *  in total, and evicts the least recently used topologies first, so a
+ *  few very large trusses cannot exhaust memory. It is safe for use by
+ *  several threads.
+ *
+ *  It also keeps, for each cached topology, an idle MirrorSymmetry for
+ *  the supports of the Michell truss, so that repeated analyses reuse its
+ *  patterns and refactor its factors. A MirrorSymmetry is not safe for
+ *  use by several threads: a caller takes it, solves with it and puts it
+ *  back; a concurrent caller finds none and uses its own.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TopologyCache {
+
+    private final int maxEntries_;    // maximum number of topologies
+    private final long maxElements_;  // maximum number of elements over all topologies
+    private final LinkedHashMap<Integer, TrussTopology> map_; // by levels, in access order
+    private final HashMap<Integer, MirrorSymmetry> mirrors_;   // idle symmetries, by levels
+    private long elements_;           // number of elements over all topologies
+    private long hits_, misses_;
+
+    /**
+     *  Initializes an empty cache.
+     *
+     *  @throws IllegalArgumentException unless both bounds are positive
+     */
+    public TopologyCache(int maxEntries, long maxElements) {
+        if (maxEntries < 1 || maxElements < 1)
+            throw new IllegalArgumentException("Cache bounds must be positive");
+        maxEntries_ = maxEntries;
+        maxElements_ = maxElements;
+        map_ = new LinkedHashMap<Integer, TrussTopology>(16, 0.75f, true);
+        mirrors_ = new HashMap<Integer, MirrorSymmetry>();
+    }
+
+    /**
+     *  Returns the topology of the Michell truss with ne bars, building it
+     *  on a miss.
+     */
+    public synchronized TrussTopology get(int ne) {
+        int na = levels(ne);
+        TrussTopology topology = map_.get(na);
+        if (topology != null) {
+            hits_++;
+            return topology;
+        }
+        misses_++;
+        topology = new TrussTopology(MichellStructure.buildTopology(ne));
+        map_.put(na, topology);
+        elements_ += topology.numElements();
+        evict();
+        return topology;
+    }
+
+    /**
+     *  Returns the cached topology of the Michell truss with ne bars, or
+     *  null if it is not cached. Does not build anything.
+     */
+    public synchronized TrussTopology peek(int ne) {
+        return map_.get(levels(ne));
+    }
+
+    /**
+     *  Takes the idle mirror symmetry of the Michell truss with ne bars out
+     *  of the cache, or returns null if there is none. The caller owns it
+     *  until it puts it back.
+     */
+    public synchronized MirrorSymmetry takeSymmetry(int ne) {
+        return mirrors_.remove(levels(ne));
+    }
+
+    /**
+     *  Puts back the mirror symmetry of the Michell truss with ne bars,
+     *  built on the cached topology, for the next analysis to reuse.
+     *  Ignored if that topology is no longer cached.
+     */
+    public synchronized void putSymmetry(int ne, TrussTopology topology, MirrorSymmetry mirror) {
+        int na = levels(ne);
+        if (map_.get(na) == topology) mirrors_.put(na, mirror);
+    }
+
+    // removes least recently used entries until both bounds are met,
+    // always keeping the most recent one
+    private void evict() {
+        Iterator<Map.Entry<Integer, TrussTopology>> it = map_.entrySet().iterator();
+        while ((map_.size() > maxEntries_ || elements_ > maxElements_) && map_.size() > 1) {
+            Map.Entry<Integer, TrussTopology> eldest = it.next();
+            elements_ -= eldest.getValue().numElements();
+            mirrors_.remove(eldest.getKey());
+            it.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        map_.clear();
+        mirrors_.clear();
+        elements_ = 0;
+    }
+
+    // G E T T E R S
+    public synchronized int     size() {  return map_.size();  }
+    public synchronized long elements() {  return elements_;  }
+    public synchronized long     hits() {  return hits_;  }
+    public synchronized long   misses() {  return misses_;  }
+
+    private static int levels(int ne) {  return (int)Math.sqrt(ne/2);  }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
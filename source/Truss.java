@@ -3,15 +3,22 @@ package mit4s48;
 /*************************************************************************
  *  Compilation:  javac Truss.java
  *  Execution:    java Truss
- *  Dependencies: TrussGraph.java  Jama.Matrix  TrussElement.java 
- *                Misc.java  processing.core.PApplet
+ *  Dependencies: TrussGeometry.java  TrussGraph.java  Jama.Matrix
+ *                TrussElement.java  TrussTopology.java  JointWorkspace.java
+ *                ForceLabels.java  TrussShape.java  MirrorSymmetry.java
+ *                Metrics.java  processing.core.PApplet
  *
  *  A Truss structure with N number of nodes or joints and E number of edges 
- *  or members. Geometry is represented as a list of nodes and a list of 
- *  members and Topology is represented as a directed graph.
+ *  or members. Geometry is represented as an array of node coordinates and 
+ *  a list of members and Topology is represented as a directed graph.
  *  The primary operations are: calculate the performance of the Truss
  *  according to the forces over each of its members. 
  *  
+ *  A Truss can also analyze itself under given supports and loads. It
+ *  keeps the analysis state between calls, so that when only its node
+ *  coordinates change (the topology is the same) the next analysis is
+ *  incremental: see JointWorkspace.update.
+ *  
  *  Includes methods for displaying Geometry using the PApplet object,
  *  which is the standard Processing API for graphics.
  *  
@@ -25,19 +32,24 @@ import processing.core.PApplet;
 
 public class Truss {
 
-    private ArrayList<Node> N_;         // nodes or joints
-    private ArrayList<TrussElement> E_; // edges or members
+    private TrussGeometry G_;           // nodes or joints (coordinates)
+    private volatile ArrayList<TrussElement> E_; // edges or members, built lazily (null until then)
     private TrussGraph T_;              // digraph represents topology
     private Matrix F_;                  // member forces
     private Matrix R_;                  // reaction forces
     private float sFL = 0;              // performance
+    private TrussTopology P_;           // element end nodes, for analyze (null until then)
+    private JointWorkspace W_;          // analysis state kept between analyses
+    private double[] X_;                // last solution: element forces, then reactions
+    private ForceLabels L_;             // force labels of the last drawForces (null until then)
+    private TrussShape D_;              // retained drawing of the last draw (null until then)
+    private MirrorSymmetry M_;          // symmetry of the last analyzeSymmetric (null until then)
 	
     /**
      *  Default constructor. Initializes an empty Truss.
      */
     public Truss() {
-        N_  = new ArrayList<Node>(); 
-	E_  = new ArrayList<TrussElement>();
+        G_  = new TrussGeometry(0); 
 	T_  = new TrussGraph(0);
     }
 	
@@ -46,40 +58,160 @@ public class Truss {
      *  list of edges and an input Truss graph T.
      */
     public Truss(final ArrayList<Node> N, final TrussGraph T) {
-        N_ = N;
-	E_  = new ArrayList<TrussElement>();
+        G_ = new TrussGeometry(N);
+	T_ = T;
+    }
+
+    /**
+     *  Initializes a Truss using the input node coordinates G (not copied)
+     *  and an input Truss graph T.
+     */
+    public Truss(final TrussGeometry G, final TrussGraph T) {
+        G_ = G;
 	T_ = T;
     }
 	
     // G E T T E R S
 	
-    public ArrayList<Node> nodes()    {  return N_;  }
+    public TrussGeometry   geometry() {  return G_;  }
     public TrussGraph      topology() {  return T_;  }
-    public int             numNodes() {  return N_.size();  }
-    public int          numElements() {  return this.elements().size();  }
+    public int             numNodes() {  return G_.numNodes();  }
+    public int          numElements() {  return T_.E();  }
     public float            sigmaFL() {  return sFL;  }
+    public Matrix            forces() {  return F_;  }
+    public Matrix         reactions() {  return R_;  }
+
+    /**
+     *  Returns the nodes as a new list of Node objects. Use geometry() to
+     *  read the coordinates without copying.
+     */
+    public ArrayList<Node> nodes() {  return G_.toNodes();  }
+
+    /**
+     *  Returns the elements of the truss, in topology order (element e
+     *  has force F(e,0)). The list is built on the first call and reused
+     *  until the geometry or topology is set again; it must not be modified.
+     */
     public ArrayList<TrussElement> elements() {
-        assert(!N_.isEmpty());
-	assert(T_.N()>0);
-	E_  = new ArrayList<TrussElement>();
-	for (int v=0; v<N_.size(); v++) {
-	    for (int w: T_.adj(v)) {
-	        Node v_token = N_.get(v);
-		Node w_token = N_.get(w);
-		TrussElement e = new TrussElement(v_token, w_token);
-		E_.add(e);
+        ArrayList<TrussElement> elements = E_;
+	if (elements == null) {
+	    assert(G_.numNodes()>0);
+	    assert(T_.N()>0);
+	    elements = new ArrayList<TrussElement>(T_.E());
+	    if (T_.isFrozen()) { // primitive CSR traversal
+	        int[] offsets = T_.offsets();
+	        int[] targets = T_.targets();
+	        for (int v=0; v<T_.N(); v++) {
+	            for (int i=offsets[v]; i<offsets[v+1]; i++) {
+		        elements.add(new TrussElement(G_, v, targets[i]));
+	            }
+	        }
+	    } else {
+	        for (int v=0; v<T_.N(); v++) {
+	            for (int w: T_.adj(v)) {
+		        elements.add(new TrussElement(G_, v, w));
+	            }
+	        }
 	    }
+	    E_ = elements;
 	}
-	return E_;
+	return elements;
     }
 	
     // S E T T E R S
 	
-    public void setGeometry(ArrayList<Node> N) {  N_ = N;  }
-    public void setTopology(TrussGraph T)      {  T_ = T;  }
+    public void setGeometry(ArrayList<Node> N) {  G_ = new TrussGeometry(N);  E_ = null;  L_ = null;  D_ = null;  }
+    public void setGeometry(TrussGeometry G)   {  G_ = G;  E_ = null;  L_ = null;  D_ = null;  }
+    public void setTopology(TrussGraph T)      {  T_ = T;  E_ = null;  P_ = null;  W_ = null;  M_ = null;  L_ = null;  D_ = null;  }
     public void setForces(Matrix F)            {  F_ = F;  }
     public void setRForces(Matrix R)           {  R_ = R;  }
 	
+    /**
+     *  Structural analysis by the method of joints, sets the forces,
+     *  reactions and performance of the truss. The analysis state is
+     *  kept, and when only node coordinates changed since the previous
+     *  call (moved in place, or through setGeometry) the previous forces
+     *  are corrected incrementally instead of solving from scratch.
+     *  The topology is frozen.
+     *
+     *  @param S = support definition, the fixity s is at node S[2s] in
+     *        direction S[2s+1] = 1 (X) or 2 (Y)
+     *  @param Q = load vector, loads on node n in the X and Y directions at
+     *        Q[2n] and Q[2n+1]
+     *  @throws IllegalArgumentException if the truss is indeterminate
+     *  @throws RuntimeException if the truss is a mechanism
+     */
+    public void analyze(int[] S, double[] Q) {
+        long start = Metrics.start();
+        if (P_ == null) P_ = new TrussTopology(T_);
+        int dofs = 2*G_.numNodes();
+        if (W_ == null || W_.dofs() != dofs || W_.numFixities() != S.length/2) {
+            W_ = new JointWorkspace(G_.numNodes(), P_.numElements(), S.length/2);
+            X_ = new double[dofs];
+            W_.solve(G_.coordinates(), P_.starts(), P_.ends(), S, Q, X_);
+        } else {
+            W_.update(G_.coordinates(), P_.starts(), P_.ends(), S, Q, X_);
+        }
+        Matrix[] fr = StructuralAnalysis.splitForces(X_, P_.numElements());
+        F_ = fr[0];
+        R_ = fr[1];
+        computePerformance();
+        Metrics.ANALYSIS.stop(start);
+    }
+
+    /**
+     *  Structural analysis by the method of joints on half of the truss,
+     *  if the truss, its supports and loads are mirror symmetric about the
+     *  X axis (see MirrorSymmetry); otherwise the same as analyze. Sets
+     *  the forces, reactions and performance of the truss. The symmetry is
+     *  kept, so repeated analyses of the same topology and supports reuse
+     *  the half systems. Does not keep the state of analyze, so
+     *  sigmaFLGradient needs a new analyze afterwards.
+     *  The topology is frozen.
+     *
+     *  @param S, Q = as in analyze
+     *  @throws IllegalArgumentException if the truss is indeterminate
+     *  @throws RuntimeException if the truss is a mechanism
+     */
+    public void analyzeSymmetric(int[] S, double[] Q) {
+        long start = Metrics.start();
+        if (P_ == null) P_ = new TrussTopology(T_);
+        double[] xy = G_.coordinates();
+        if (M_ == null || !M_.appliesTo(P_.starts(), P_.ends(), S) || !M_.isSymmetric(xy))
+            M_ = MirrorSymmetry.find(xy, P_.starts(), P_.ends(), S);
+        if (M_ == null) {
+            analyze(S, Q);
+            return;
+        }
+        Matrix[] fr = M_.solve(xy, Q);
+        W_ = null;
+        X_ = null;
+        F_ = fr[0];
+        R_ = fr[1];
+        computePerformance();
+        Metrics.ANALYSIS.stop(start);
+    }
+
+    /**
+     *  Gradient of the performance sigmaFL with respect to the node
+     *  coordinates, at the last analyze, under the same supports and loads
+     *  (see StructuralAnalysis.sigmaFLGradient). Costs one adjoint solve
+     *  with the factorization kept by analyze.
+     *
+     *  @return d(sigmaFL)/d(xy), with the derivatives with respect to X
+     *          and Y of node n at 2n and 2n+1
+     *  @throws IllegalStateException if the truss was not analyzed with analyze
+     */
+    public double[] sigmaFLGradient() {
+        if (W_ == null) throw new IllegalStateException("Analyze the truss first");
+        double[] xy = G_.coordinates();
+        int[] from = P_.starts();
+        int[] to = P_.ends();
+        double[] g = StructuralAnalysis.adjointLoad(xy, from, to, X_, new double[X_.length]);
+        double[] lambda = W_.solveTranspose(g, new double[X_.length]);
+        return StructuralAnalysis.sigmaFLGradient(xy, from, to, X_, lambda, new double[xy.length]);
+    }
+
     /**
      *  Performance index:
      *  δ = Sum (􏰥|fi|·li / L), where fi the force on each element, li the length of each element, 
@@ -87,56 +219,56 @@ public class Truss {
      *  have the same characteristic length). 
      */
     public void computePerformance() {
+        long start = Metrics.start();
         if (!(F_.getRowDimension()>0)) {
             System.out.print("Compute forces first..\n");
 	} else {
             ArrayList<TrussElement> tmp = elements();
-	    // int num = tmp.size();
-	    int count = 0;
-	    float sigmafl = 0;
-	    for (TrussElement te: tmp) {
-	        float length = te.length();
-		float fi = (float) F_.get(count++, 0);
-		    sigmafl += length*Math.abs(fi);
+	    double sigmafl = 0;
+	    for (int i=0; i<tmp.size(); i++) {
+	        TrussElement te = tmp.get(i);
+	        double length = G_.length(te.from(), te.to());
+		double fi = F_.get(i, 0);
+		sigmafl += length*Math.abs(fi);
 	    }
-		//System.out.print(sigmafl);
-		sFL = sigmafl;
+	    sFL = (float) sigmafl;
 	}
+        Metrics.PERFORMANCE.stop(start);
     }
 	
-    // draw on screen using given Processing Applet
+    // draw on screen using given Processing Applet; the members and nodes
+    // are built once per analysis into a retained shape (see TrussShape).
+    // The topology is frozen, as by analyze
     public void draw(PApplet p5, boolean nodes, int scale) {
-        for (int v=0; v<N_.size(); v++) {
-	    for (int w: T_.adj(v)) {
-	        Node v_token = N_.get(v);
-		Node w_token = N_.get(w);
-	        TrussElement e = new TrussElement(v_token, w_token);
-		e.draw(p5, scale);
-		if (nodes) {
-		    v_token.draw(p5, scale);
-		    w_token.draw(p5, scale);
-		}
-	    }
-	}
+        shape(scale).draw(p5, nodes, false);
+    }
+
+    // draw with the members colored and weighted by force, tension red and
+    // compression blue (see TrussShape). The topology is frozen
+    public void drawForceColors(PApplet p5, boolean nodes, int scale) {
+        shape(scale).draw(p5, nodes, true);
+    }
+
+    // retained drawing of the truss at the given scale, built once per analysis
+    private TrussShape shape(int scale) {
+        TrussShape shape = D_;
+        if (shape == null || !shape.matches(G_, T_, F_, scale)) {
+            if (P_ == null) P_ = new TrussTopology(T_);
+            shape = new TrussShape(this, P_, scale);
+            D_ = shape;
+        }
+        return shape;
     }
 	
-    // draw forces as text on each element
+    // draw forces as text on each element; the labels are computed once
+    // per analysis (see ForceLabels) and only placed on each frame
     public void drawForces(PApplet p5, int scale) {
-        ArrayList<TrussElement> tmp = elements();
-	// int num = tmp.size();
-	int count = 0;
-	for (TrussElement te: tmp) {
-	    float f = (float) F_.get(count++, 0);
-	    String txt = String.valueOf((int)f) + " kN";
-	    float fx = te.fromN().x();
-	    float fy = te.fromN().y();
-	    float tx = te.toN().x();
-	    float ty = te.toN().y();
-	    float mx = (fx+tx)/2*scale;
-	    float my = (fy+ty)/2*scale;
-			
-	    Misc.displaytext(p5, txt, p5.createFont("Times", 14, true), 10, 255, 'C', (int)mx, (int)my); 
-	}
+        ForceLabels labels = L_;
+        if (labels == null || !labels.matches(F_, scale)) {
+            labels = new ForceLabels(elements(), F_, scale);
+            L_ = labels;
+        }
+        labels.draw(p5);
     }
 	
     /**
@@ -1,9 +1,14 @@
+package mit4s48;
+
 /*************************************************************************
  *  Compilation:  javac TrussElement.java
  *  Execution:    java TrussElement
- *  Dependencies: Node.java  processing.core.PApplet
+ *  Dependencies: TrussGeometry.java  Node.java  processing.core.PApplet
  *
- *  A TrussElement object represented as a directed edge between two Nodes
+ *  A TrussElement object represented as a directed edge between two nodes
+ *  of a TrussGeometry, referenced by index. An element holds no coordinates
+ *  of its own: it reads them from the geometry, so it always reflects the
+ *  current node positions.
  *  
  *  Includes methods for displaying Geometry using the PApplet object,
  *  which is the standard Processing API for graphics.
@@ -15,39 +20,49 @@ import processing.core.PApplet;
 
 public class TrussElement {
 
-    private Node from_n;
-    private Node to_n;
+    private final TrussGeometry G_;  // node coordinates
+    private final int from_n;        // index of the start node
+    private final int to_n;          // index of the end node
 	
-    TrussElement() { /* default constructor */ }
+    TrussElement(final TrussGeometry G, int from, int to) {
+        G_      = G;
+        from_n  = from;
+	to_n    = to;
+    }
+
+    // element between two standalone nodes
     TrussElement(final Node fv3, final Node tv3) {
-        from_n  = fv3;
-	to_n    = tv3;
+        G_ = new TrussGeometry(2);
+        G_.set(0, fv3.x(), fv3.y());
+        G_.set(1, tv3.x(), tv3.y());
+        from_n = 0;
+        to_n   = 1;
     }
 	
     // getters
-    public Node fromN()    {  return from_n;  }
-    public Node toN()      {  return to_n;    }
+    public int    from()   {  return from_n;  }
+    public int      to()   {  return to_n;    }
+    public double fromX()  {  return G_.x(from_n);  }
+    public double fromY()  {  return G_.y(from_n);  }
+    public double   toX()  {  return G_.x(to_n);  }
+    public double   toY()  {  return G_.y(to_n);  }
+    public Node   fromN()  {  return new Node((float)fromX(), (float)fromY());  }
+    public Node     toN()  {  return new Node((float)toX(), (float)toY());  }
 
     public float length()  {
-        float xx = to_n.x()-from_n.x();
-	float yy = to_n.y()-from_n.y();
-	return ( (float)Math.sqrt(xx*xx + yy*yy) );
+        return (float)G_.length(from_n, to_n);
     }
 	
-    // setters
-    public void setFromN(final Node f) {  from_n = f;  }
-    public void setToN(final Node t)   {  to_n   = t;  }
-	
     // draw on screen using given Processing Applet
     public void draw(PApplet p5, int scale) {
         p5.stroke(160);
 	p5.strokeWeight(1);
-	p5.line(from_n.x()*scale, from_n.y()*scale, to_n.x()*scale, to_n.y()*scale);
+	p5.line((float)fromX()*scale, (float)fromY()*scale, (float)toX()*scale, (float)toY()*scale);
     }
 	
     public String toString() {
-	return "{ From: " + from_n.x() + ", " + from_n.y() + "\n" +
-               " To: " + to_n.x() + ", " + to_n.y() + " }\n";
+	return "{ From: " + fromX() + ", " + fromY() + "\n" +
+               " To: " + toX() + ", " + toY() + " }\n";
     }
 	
     /**
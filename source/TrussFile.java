@@ -0,0 +1,230 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac TrussFile.java
+ *  Execution:    java TrussFile
+ *  Dependencies: Truss.java  TrussGeometry.java  TrussGraph.java
+ *                TrussReader.java  MichellStructure.java  Jama.Matrix
+ *
+ *  Versioned binary file format for a truss with its supports and loads,
+ *  and optionally its forces and reactions, so that a generated or
+ *  optimized truss can be saved and loaded again without regenerating or
+ *  re-analyzing it. All values are little endian:
+ *
+ *      header (HEADER bytes)
+ *          int    magic "MTRS", version, flags (FORCES | REACTIONS)
+ *          int    N nodes, E elements, fixities, nonzero loads
+ *          int    (reserved)
+ *          double sigmaFL
+ *          long   (reserved)
+ *      double  x, y of each node                  (2N)
+ *      int     CSR offsets of the topology         (N+1)
+ *      int     CSR targets (end node of each element, in topology order)  (E)
+ *      int     supports: node, direction (1 X, 2 Y) of each fixity
+ *      int     DOF of each nonzero load (2n X, 2n+1 Y at node n)
+ *      double  value of each nonzero load
+ *      double  element forces, if FORCES        (E)
+ *      double  reactions, if REACTIONS          (fixities)
+ *
+ *  write and read transfer whole sections in bulk through a direct
+ *  buffer, and read builds the frozen topology straight from the CSR
+ *  arrays. To process a file piece by piece instead, use TrussReader.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import Jama.Matrix;
+
+public class TrussFile {
+
+    static final int MAGIC = 0x5352544d;   // "MTRS" little endian
+    static final int VERSION = 1;
+    static final int HEADER = 48;          // header size in bytes
+    static final int FORCES = 1;           // flags
+    static final int REACTIONS = 2;
+    static final int BUFFER = 1 << 20;     // bulk transfer buffer size in bytes
+
+    private final Truss truss_;
+    private final int[] S_;
+    private final double[] Q_;
+
+    private TrussFile(Truss truss, int[] S, double[] Q) {
+        truss_ = truss;
+        S_ = S;
+        Q_ = Q;
+    }
+
+    // G E T T E R S
+    public Truss     truss() {  return truss_;  }
+    public int[]  supports() {  return S_;  }   // in the format of Truss.analyze
+    public double[]  loads() {  return Q_;  }   // in the format of Truss.analyze
+
+    /**
+     *  Saves a truss with its supports S and load vector Q (in the formats
+     *  of Truss.analyze, either may be null for none). The forces and
+     *  reactions are saved if the truss has them. The topology is frozen.
+     *
+     *  @throws IllegalArgumentException if S or Q do not match the truss
+     *  @throws IOException if the file cannot be written
+     */
+    public static void write(File file, final Truss truss, final int[] S, final double[] Q) throws IOException {
+        int N = truss.numNodes();
+        TrussGraph graph = truss.topology().freeze();
+        int E = graph.E();
+        int[] supports = (S == null) ? new int[0] : S;
+        if (supports.length%2 != 0 || (Q != null && Q.length != 2*N))
+            throw new IllegalArgumentException("Supports or loads do not match the truss");
+        int nFixities = supports.length/2;
+        int nLoads = 0;
+        if (Q != null) for (int d=0; d<Q.length; d++) if (Q[d] != 0) nLoads++;
+        int[] dofs = new int[nLoads];
+        double[] values = new double[nLoads];
+        for (int d=0, k=0; Q != null && d<Q.length; d++) {
+            if (Q[d] == 0) continue;
+            dofs[k] = d;
+            values[k++] = Q[d];
+        }
+        Matrix F = truss.forces();
+        Matrix R = truss.reactions();
+        boolean forces = F != null && F.getRowDimension() == E;
+        boolean reactions = R != null && R.getRowDimension() == nFixities && nFixities > 0;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            ByteBuffer b = ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+            b.putInt(MAGIC).putInt(VERSION).putInt((forces ? FORCES : 0) | (reactions ? REACTIONS : 0));
+            b.putInt(N).putInt(E).putInt(nFixities).putInt(nLoads).putInt(0);
+            b.putDouble(forces ? truss.sigmaFL() : 0).putLong(0);
+            flush(channel, b);
+            writeDoubles(channel, b, truss.geometry().coordinates(), 2*N);
+            writeInts(channel, b, graph.offsets(), N+1);
+            writeInts(channel, b, graph.targets(), E);
+            writeInts(channel, b, supports, supports.length);
+            writeInts(channel, b, dofs, nLoads);
+            writeDoubles(channel, b, values, nLoads);
+            if (forces) writeDoubles(channel, b, F.getColumnPackedCopy(), E);
+            if (reactions) writeDoubles(channel, b, R.getColumnPackedCopy(), nFixities);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     *  Loads a truss with its supports, loads, and forces and reactions if
+     *  saved. The topology is frozen.
+     *
+     *  @throws IOException if the file cannot be read or is not a valid
+     *          truss file
+     */
+    public static TrussFile read(File file) throws IOException {
+        TrussReader in = new TrussReader(file);
+        try {
+            int N = in.numNodes();
+            int E = in.numElements();
+            TrussGeometry G = new TrussGeometry(N);
+            in.readCoordinates(0, G.coordinates());
+            int[] offsets = new int[N+1];
+            int[] targets = new int[E];
+            in.readOffsets(0, offsets);
+            in.readTargets(0, targets);
+            if (offsets[0] != 0 || offsets[N] != E) throw new IOException("Corrupt truss file");
+            for (int v=0; v<N; v++) {
+                if (offsets[v+1] < offsets[v]) throw new IOException("Corrupt truss file");
+            }
+            for (int e=0; e<E; e++) {
+                if (targets[e] < 0 || targets[e] >= N) throw new IOException("Corrupt truss file");
+            }
+
+            int[] S = in.readSupports();
+            for (int i=0; i<S.length; i+=2) {
+                if (S[i] < 0 || S[i] >= N || (S[i+1] != 1 && S[i+1] != 2))
+                    throw new IOException("Corrupt truss file");
+            }
+            double[] Q = new double[2*N];
+            int[] dofs = new int[in.numLoads()];
+            double[] values = new double[in.numLoads()];
+            in.readLoads(0, dofs, values);
+            for (int k=0; k<dofs.length; k++) {
+                if (dofs[k] < 0 || dofs[k] >= 2*N) throw new IOException("Corrupt truss file");
+                Q[dofs[k]] = values[k];
+            }
+
+            Truss truss = new Truss(G, new TrussGraph(offsets, targets));
+            if (in.hasForces()) {
+                double[] F = new double[E];
+                in.readForces(0, F);
+                truss.setForces(new Matrix(F, E));
+                truss.computePerformance();
+            }
+            if (in.hasReactions()) {
+                truss.setRForces(new Matrix(in.readReactions(), S.length/2));
+            }
+            return new TrussFile(truss, S, Q);
+        } finally {
+            in.close();
+        }
+    }
+
+    // writes the buffer contents and clears it
+    private static void flush(FileChannel channel, ByteBuffer b) throws IOException {
+        b.flip();
+        while (b.hasRemaining()) channel.write(b);
+        b.clear();
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer b, int[] a, int len) throws IOException {
+        for (int off=0; off<len; ) {
+            int n = Math.min(len-off, b.capacity()/4);
+            b.asIntBuffer().put(a, off, n);
+            b.position(4*n);
+            flush(channel, b);
+            off += n;
+        }
+    }
+
+    private static void writeDoubles(FileChannel channel, ByteBuffer b, double[] a, int len) throws IOException {
+        for (int off=0; off<len; ) {
+            int n = Math.min(len-off, b.capacity()/8);
+            b.asDoubleBuffer().put(a, off, n);
+            b.position(8*n);
+            flush(channel, b);
+            off += n;
+        }
+    }
+
+    /**
+     *  Test client and sample execution: saves and reloads an analyzed
+     *  Michell truss of 5000 bars.
+     */
+    public static void main(String[] args) throws IOException {
+        int ne = 5000;
+        long start = System.nanoTime();
+        Truss truss = MichellStructure.generate(ne, 8, 40);
+        int[] S = {0, 1, 0, 2, 1, 1, 1, 2};
+        double[] Q = new double[2*truss.numNodes()];
+        Q[Q.length-1] = MichellStructure.LOAD;
+        truss.analyze(S, Q);
+        System.out.printf("generated and analyzed in %.0f ms%n", (System.nanoTime()-start)/1e6);
+
+        File file = File.createTempFile("michell", ".truss");
+        file.deleteOnExit();
+        start = System.nanoTime();
+        write(file, truss, S, Q);
+        System.out.printf("saved %d bytes in %.1f ms%n", file.length(), (System.nanoTime()-start)/1e6);
+        start = System.nanoTime();
+        TrussFile loaded = read(file);
+        System.out.printf("loaded in %.1f ms: %d nodes, %d elements, sigmaFL %.2f (saved %.2f)%n",
+                          (System.nanoTime()-start)/1e6, loaded.truss().numNodes(),
+                          loaded.truss().numElements(), loaded.truss().sigmaFL(), truss.sigmaFL());
+    }
+
+}
@@ -0,0 +1,96 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac TrussGeometry.java
+ *  Execution:    java TrussGeometry
+ *  Dependencies: Node.java
+ *
+ *  The node coordinates of a truss, stored as one contiguous array of
+ *  doubles with the X and Y coordinates of node n at 2n and 2n+1 (the
+ *  same layout as the degrees of freedom in StructuralAnalysis). There is
+ *  no object per node, and coordinates stay in double precision from the
+ *  generator through the performance computation and the solver.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.util.ArrayList;
+
+public class TrussGeometry {
+
+    private final double[] xy_;  // interleaved coordinates
+    private final int N_;        // number of nodes
+
+    /**
+     *  Initializes a geometry with N nodes, all at the origin.
+     *
+     *  @throws IllegalArgumentException if N < 0
+     */
+    public TrussGeometry(int N) {
+        if (N < 0) throw new IllegalArgumentException("Number of nodes must be nonnegative");
+        N_ = N;
+        xy_ = new double[2*N];
+    }
+
+    /**
+     *  Initializes a geometry with the coordinates of a list of nodes.
+     */
+    public TrussGeometry(final ArrayList<Node> nodes) {
+        this(nodes.size());
+        for (int i=0; i<N_; i++) {
+            xy_[2*i]   = nodes.get(i).x();
+            xy_[2*i+1] = nodes.get(i).y();
+        }
+    }
+
+    /**
+     *  Initializes a geometry by copying another geometry.
+     */
+    public TrussGeometry(final TrussGeometry in) {
+        N_ = in.N_;
+        xy_ = in.xy_.clone();
+    }
+
+    // G E T T E R S
+    public int  numNodes() {  return N_;  }
+    public double x(int n) {  return xy_[2*n];  }
+    public double y(int n) {  return xy_[2*n+1];  }
+
+    /**
+     *  The interleaved coordinates array (size 2N), without copying.
+     *  Writes to it change this geometry.
+     */
+    public double[] coordinates() {  return xy_;  }
+
+    // S E T T E R S
+    public void set(int n, double x, double y) {
+        xy_[2*n]   = x;
+        xy_[2*n+1] = y;
+    }
+
+    /**
+     *  Returns the distance between nodes n1 and n2.
+     */
+    public double length(int n1, int n2) {
+        double dx = xy_[2*n2]   - xy_[2*n1];
+        double dy = xy_[2*n2+1] - xy_[2*n1+1];
+        return Math.sqrt(dx*dx + dy*dy);
+    }
+
+    /**
+     *  Returns the nodes as a new list of Node objects (single precision).
+     */
+    public ArrayList<Node> toNodes() {
+        ArrayList<Node> nodes = new ArrayList<Node>(N_);
+        for (int i=0; i<N_; i++) {
+            nodes.add(new Node((float)xy_[2*i], (float)xy_[2*i+1]));
+        }
+        return nodes;
+    }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
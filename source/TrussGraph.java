@@ -1,3 +1,5 @@
+package mit4s48;
+
 /*************************************************************************
  *  Compilation:  javac TrussGraph.java
  *  Execution:    java TrussGraph
@@ -9,18 +11,27 @@
  *  This implementation uses an adjacency-lists representation, which 
  *  is a vertex-indexed ArrayList of ArrayList objects. The primary
  *  operations are: add directed edge to the truss graph, iterate over
- *  all the nodes adjacent to a given node.
+ *  all the nodes adjacent to a given node. A graph can be frozen once
+ *  built, after which it is immutable and can be shared between trusses
+ *  and threads. Freezing compacts the adjacency lists into compressed
+ *  sparse row (CSR) form: the nodes adjacent from v are
+ *  targets[offsets[v] .. offsets[v+1]-1], two int arrays without any
+ *  boxed Integer, which can be traversed directly.
  *  
  *  @author Alexandros Haridis, Digital Structures, MIT
  *************************************************************************/
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 public class TrussGraph {
 
     private ArrayList<Integer>[] adj_; // adjacency list, e.g. adj_[v] = adjacency list for vertex v
     private final int V_;              // number of nodes (truss joints)
     private int       E_;              // number of edges (truss members)
+    private int[] offsets_, targets_;  // CSR form, once frozen (adj_ is then null)
+    private volatile boolean frozen_;  // true if no more edges can be added
     
     /**
      *  Initializes an empty Truss Graph with V nodes.
@@ -37,6 +48,18 @@ public class TrussGraph {
     	}
     }
 	
+    /**
+     *  Initializes a frozen graph from its CSR form (see offsets and
+     *  targets); the arrays are not copied, and must be consistent.
+     */
+    TrussGraph(final int[] offsets, final int[] targets) {
+        V_ = offsets.length-1;
+        E_ = targets.length;
+        offsets_ = offsets;
+        targets_ = targets;
+        frozen_ = true;
+    }
+	
     /**
      *  Validate that v is a valid index
      *
@@ -50,21 +73,92 @@ public class TrussGraph {
     
     // adds directed edge v→w
     public void addEdge(int v, int w) {
+        if (frozen_) throw new UnsupportedOperationException("Truss graph is frozen");
     	validate(v);
         validate(w);
         adj_[v].add(w);
         E_++;
     }
     
+    /**
+     *  Makes this graph immutable and compacts it into CSR form: any
+     *  further addEdge throws UnsupportedOperationException. Adjacency
+     *  order is preserved.
+     *
+     *  @return this graph
+     */
+    public synchronized TrussGraph freeze() {
+        if (frozen_) return this;
+        int[] offsets = new int[V_+1];
+        int[] targets = new int[E_];
+        int e = 0;
+        for (int v=0; v<V_; v++) {
+            offsets[v] = e;
+            for (int i=0; i<adj_[v].size(); i++) targets[e++] = adj_[v].get(i);
+        }
+        offsets[V_] = e;
+        offsets_ = offsets;
+        targets_ = targets;
+        adj_ = null;
+        frozen_ = true;
+        return this;
+    }
+    
     // G E T T E R S
     public int N() {  return V_;  }
     public int E() {  return E_;  }
+    public boolean isFrozen() {  return frozen_;  }
+
+    /**
+     *  CSR offsets of a frozen graph (size N+1): the edges from node v are
+     *  offsets[v] .. offsets[v+1]-1. The array must not be modified.
+     *
+     *  @throws IllegalStateException if the graph is not frozen
+     */
+    public int[] offsets() {
+        if (!frozen_) throw new IllegalStateException("Truss graph is not frozen");
+        return offsets_;
+    }
+
+    /**
+     *  CSR targets of a frozen graph (size E): targets[i] is the end node
+     *  of edge i. The array must not be modified.
+     *
+     *  @throws IllegalStateException if the graph is not frozen
+     */
+    public int[] targets() {
+        if (!frozen_) throw new IllegalStateException("Truss graph is not frozen");
+        return targets_;
+    }
     
     // Returns the nodes adjacent from node v in this graph.
     public Iterable<Integer> adj(int v) {
     	validate(v);
+        if (frozen_) return new AdjIterable(offsets_[v], offsets_[v+1]);
         return adj_[v];
     }
+
+    // boxing view of a range of the CSR targets, for adj() on a frozen graph
+    private class AdjIterable implements Iterable<Integer> {
+        private final int lo_, hi_;
+
+        AdjIterable(int lo, int hi) {
+            lo_ = lo;
+            hi_ = hi;
+        }
+
+        public Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+                private int i = lo_;
+                public boolean hasNext() {  return i < hi_;  }
+                public Integer next() {
+                    if (i >= hi_) throw new NoSuchElementException();
+                    return targets_[i++];
+                }
+                public void remove() {  throw new UnsupportedOperationException();  }
+            };
+        }
+    }
     
     /**
      *  Returns a string representation of the graph.
@@ -76,9 +170,9 @@ public class TrussGraph {
         StringBuilder s = new StringBuilder();
         s.append(V_ + " vertices, " + E_ + " edges \n");
         for (int v = 0; v < V_; v++) {
-            s.append(String.format("%d: ", v));
-            for (int w : adj_[v]) {
-                s.append(String.format("%d ", w));
+            s.append(v).append(": ");
+            for (int w : adj(v)) {
+                s.append(w).append(' ');
             }
             s.append("\n");
         }
@@ -0,0 +1,259 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac TrussReader.java
+ *  Execution:    java TrussReader
+ *  Dependencies: TrussFile.java
+ *
+ *  Streaming reader of a truss file (see TrussFile for the format). The
+ *  header is read on open; every section can then be read in chunks from
+ *  any position into caller-owned arrays, so a truss larger than the
+ *  heap can be processed piece by piece. Reads are positional, in bulk
+ *  through one direct buffer, and never load more than the requested
+ *  chunk.
+ *
+ *  A reader is not safe for use by several threads at once.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+public class TrussReader implements Closeable {
+
+    private final RandomAccessFile file_;
+    private final FileChannel channel_;
+    private final ByteBuffer buffer_;    // bulk transfer buffer
+    private final int N_, E_;            // numbers of nodes and elements
+    private final int nFixities_, nLoads_;
+    private final int flags_;
+    private final double sigmaFL_;
+    private final long xy_, offsets_, targets_, supports_, loadDofs_, loadValues_, forces_, reactions_;  // section positions
+
+    private final int[] window_ = new int[4096];  // offsets[windowStart_ ..] for readElements
+    private int windowStart_ = -1, windowSize_;
+
+    /**
+     *  Opens a truss file and reads its header.
+     *
+     *  @throws IOException if the file cannot be read, is not a truss file
+     *          or is shorter than its header says
+     */
+    public TrussReader(File file) throws IOException {
+        file_ = new RandomAccessFile(file, "r");
+        channel_ = file_.getChannel();
+        buffer_ = ByteBuffer.allocateDirect(TrussFile.BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (channel_.size() < TrussFile.HEADER) throw new IOException("Not a truss file");
+            read(0, TrussFile.HEADER);
+            if (buffer_.getInt(0) != TrussFile.MAGIC) throw new IOException("Not a truss file");
+            if (buffer_.getInt(4) != TrussFile.VERSION)
+                throw new IOException("Unsupported truss file version " + buffer_.getInt(4));
+            flags_ = buffer_.getInt(8);
+            N_ = buffer_.getInt(12);
+            E_ = buffer_.getInt(16);
+            nFixities_ = buffer_.getInt(20);
+            nLoads_ = buffer_.getInt(24);
+            sigmaFL_ = buffer_.getDouble(32);
+            if (N_ < 0 || E_ < 0 || nFixities_ < 0 || nLoads_ < 0) throw new IOException("Corrupt truss file");
+
+            xy_ = TrussFile.HEADER;
+            offsets_ = xy_ + 16L*N_;
+            targets_ = offsets_ + 4L*(N_+1);
+            supports_ = targets_ + 4L*E_;
+            loadDofs_ = supports_ + 8L*nFixities_;
+            loadValues_ = loadDofs_ + 4L*nLoads_;
+            forces_ = loadValues_ + 8L*nLoads_;
+            reactions_ = forces_ + (hasForces() ? 8L*E_ : 0);
+            long end = reactions_ + (hasReactions() ? 8L*nFixities_ : 0);
+            if (channel_.size() < end) throw new IOException("Truncated truss file");
+        } catch (IOException e) {
+            file_.close();
+            throw e;
+        }
+    }
+
+    // G E T T E R S
+    public int      numNodes() {  return N_;  }
+    public int   numElements() {  return E_;  }
+    public int   numFixities() {  return nFixities_;  }
+    public int      numLoads() {  return nLoads_;  }
+    public boolean hasForces() {  return (flags_ & TrussFile.FORCES) != 0;  }
+    public boolean hasReactions() {  return (flags_ & TrussFile.REACTIONS) != 0;  }
+    public double    sigmaFL() {  return sigmaFL_;  }  // as saved, 0 if unknown
+
+    /**
+     *  Reads the coordinates of nodes first, first+1, ... into xy (x and y
+     *  of each node), as many as fit and exist.
+     *
+     *  @return the number of nodes read
+     */
+    public int readCoordinates(int first, double[] xy) throws IOException {
+        int n = count(first, xy.length/2, N_);
+        readDoubles(xy_ + 16L*first, xy, 0, 2*n);
+        return n;
+    }
+
+    /**
+     *  Reads the CSR offsets first, first+1, ... (N+1 in all) into offsets.
+     *
+     *  @return the number of offsets read
+     */
+    public int readOffsets(int first, int[] offsets) throws IOException {
+        int n = count(first, offsets.length, N_+1);
+        readInts(offsets_ + 4L*first, offsets, 0, n);
+        return n;
+    }
+
+    /**
+     *  Reads the CSR targets (end nodes) of elements first, first+1, ...
+     *
+     *  @return the number of targets read
+     */
+    public int readTargets(int first, int[] targets) throws IOException {
+        int n = count(first, targets.length, E_);
+        readInts(targets_ + 4L*first, targets, 0, n);
+        return n;
+    }
+
+    /**
+     *  Reads the start and end nodes of elements first, first+1, ..., in
+     *  topology order, as many as fit in from and to.
+     *
+     *  @return the number of elements read
+     *  @throws IOException if the offsets are inconsistent
+     */
+    public int readElements(int first, int[] from, int[] to) throws IOException {
+        int n = count(first, Math.min(from.length, to.length), E_);
+        if (n == 0) return 0;
+        readInts(targets_ + 4L*first, to, 0, n);
+
+        // start node of element first: offsets[v] <= first < offsets[v+1]
+        int lo = 0, hi = N_-1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offset(mid) <= first) lo = mid;
+            else hi = mid-1;
+        }
+        int v = lo;
+        int next = offset(v+1);
+        for (int k=0; k<n; k++) {
+            while (first+k >= next) {
+                if (++v >= N_) throw new IOException("Corrupt truss file");
+                next = offset(v+1);
+            }
+            from[k] = v;
+        }
+        return n;
+    }
+
+    /**
+     *  Reads the support definition (in the format of Truss.analyze).
+     */
+    public int[] readSupports() throws IOException {
+        int[] S = new int[2*nFixities_];
+        readInts(supports_, S, 0, S.length);
+        return S;
+    }
+
+    /**
+     *  Reads the nonzero loads first, first+1, ...: the DOF of each (2n
+     *  for X, 2n+1 for Y at node n) and its value.
+     *
+     *  @return the number of loads read
+     */
+    public int readLoads(int first, int[] dofs, double[] values) throws IOException {
+        int n = count(first, Math.min(dofs.length, values.length), nLoads_);
+        readInts(loadDofs_ + 4L*first, dofs, 0, n);
+        readDoubles(loadValues_ + 8L*first, values, 0, n);
+        return n;
+    }
+
+    /**
+     *  Reads the forces of elements first, first+1, ...
+     *
+     *  @return the number of forces read
+     *  @throws IllegalStateException if the file has no forces
+     */
+    public int readForces(int first, double[] forces) throws IOException {
+        if (!hasForces()) throw new IllegalStateException("The file has no forces");
+        int n = count(first, forces.length, E_);
+        readDoubles(forces_ + 8L*first, forces, 0, n);
+        return n;
+    }
+
+    /**
+     *  Reads the support reactions, in the order of the supports.
+     *
+     *  @throws IllegalStateException if the file has no reactions
+     */
+    public double[] readReactions() throws IOException {
+        if (!hasReactions()) throw new IllegalStateException("The file has no reactions");
+        double[] R = new double[nFixities_];
+        readDoubles(reactions_, R, 0, R.length);
+        return R;
+    }
+
+    public void close() throws IOException {
+        file_.close();
+    }
+
+    // offsets[v], through a window of the offsets section
+    private int offset(int v) throws IOException {
+        if (v < windowStart_ || v >= windowStart_ + windowSize_) {
+            windowStart_ = v;
+            windowSize_ = readOffsets(v, window_);
+        }
+        return window_[v - windowStart_];
+    }
+
+    private static int count(int first, int room, int total) {
+        if (first < 0 || first > total) throw new IndexOutOfBoundsException("index " + first);
+        return Math.min(room, total-first);
+    }
+
+    // reads len bytes at position into the buffer
+    private void read(long position, int len) throws IOException {
+        buffer_.clear();
+        buffer_.limit(len);
+        while (buffer_.hasRemaining()) {
+            if (channel_.read(buffer_, position + buffer_.position()) < 0)
+                throw new IOException("Truncated truss file");
+        }
+        buffer_.flip();
+    }
+
+    private void readInts(long position, int[] a, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, buffer_.capacity()/4);
+            read(position, 4*n);
+            buffer_.asIntBuffer().get(a, off, n);
+            position += 4L*n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void readDoubles(long position, double[] a, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, buffer_.capacity()/8);
+            read(position, 8*n);
+            buffer_.asDoubleBuffer().get(a, off, n);
+            position += 8L*n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
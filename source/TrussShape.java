@@ -0,0 +1,331 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac TrussShape.java
+ *  Execution:    java TrussShape
+ *  Dependencies: Truss.java  TrussGeometry.java  TrussGraph.java  TrussTopology.java
+ *                processing.core.PApplet  processing.core.PShape
+ *                processing.core.PGraphicsJava2D
+ *
+ *  Retained-mode drawing of a truss: the members and the nodes are built
+ *  once, at a given drawing scale, into shapes that are drawn with a
+ *  single call each per frame, instead of one line and two ellipses per
+ *  member in immediate mode. Each node is drawn once, however many
+ *  members meet at it.
+ *
+ *  The shapes depend on the renderer. With the default JAVA2D renderer
+ *  they are java.awt paths, drawn directly on its Graphics2D (Processing
+ *  2 has no PShape support there). With the OpenGL renderers (P2D, P3D)
+ *  they are PShapes, built on the first draw. While a PDF or other
+ *  recorder is active the same cached coordinates are drawn in immediate
+ *  mode, so that the recorder sees them.
+ *
+ *  The look is that of TrussElement.draw and Node.draw, or, in the force
+ *  colored mode, a heat map of the member forces: each member force is
+ *  quantized to one of LEVELS levels of tension or of compression, and
+ *  drawn with the color of its level on a precomputed ramp (red for
+ *  tension, blue for compression, gray at zero) and a stroke weight that
+ *  grows with the force. The per-member colors and weights are computed
+ *  once per shape. With JAVA2D, the members of each level form one path,
+ *  so a frame takes one draw call per level, not per member.
+ *
+ *  A shape belongs to one analysis: Truss.draw builds a new one when the
+ *  geometry, topology, forces or scale change.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Stroke;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+
+import Jama.Matrix;
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PGraphicsJava2D;
+import processing.core.PShape;
+
+public class TrussShape {
+
+    public static final int MEMBER_STROKE = 160;
+    public static final int NODE_FILL = 190;
+    public static final int NODE_STROKE = 0;
+    public static final float NODE_SIZE = 5;    // diameter in pixels, not scaled
+    public static final int LEVELS = 16;        // force levels of tension, and of compression
+    public static final int TENSION = 0xffdc3228;       // color of the largest tension
+    public static final int COMPRESSION = 0xff286edc;   // color of the largest compression
+    public static final float MAX_WEIGHT = 4;   // stroke weight of the largest force
+
+    private static final Stroke STROKE = new BasicStroke(1, BasicStroke.CAP_ROUND, BasicStroke.JOIN_MITER);
+    private static final Color MEMBER_COLOR = new Color(MEMBER_STROKE, MEMBER_STROKE, MEMBER_STROKE);
+    private static final Color NODE_FILL_COLOR = new Color(NODE_FILL, NODE_FILL, NODE_FILL);
+    private static final Color NODE_STROKE_COLOR = new Color(NODE_STROKE, NODE_STROKE, NODE_STROKE);
+
+    // color ramp and stroke weights of the force levels -LEVELS..LEVELS, at index level+LEVELS
+    private static final int[] RAMP = new int[2*LEVELS+1];
+    private static final float[] WEIGHTS = new float[2*LEVELS+1];
+    private static final Color[] RAMP_COLORS = new Color[2*LEVELS+1];
+    private static final Stroke[] RAMP_STROKES = new Stroke[2*LEVELS+1];
+    static {
+        int gray = 0xff000000 | MEMBER_STROKE << 16 | MEMBER_STROKE << 8 | MEMBER_STROKE;
+        for (int l=-LEVELS; l<=LEVELS; l++) {
+            float t = (float)Math.abs(l)/LEVELS;
+            RAMP[l+LEVELS] = lerpColor(gray, (l < 0) ? COMPRESSION : TENSION, t);
+            WEIGHTS[l+LEVELS] = 1 + (MAX_WEIGHT-1)*t;
+            RAMP_COLORS[l+LEVELS] = new Color(RAMP[l+LEVELS], true);
+            RAMP_STROKES[l+LEVELS] = new BasicStroke(WEIGHTS[l+LEVELS], BasicStroke.CAP_ROUND, BasicStroke.JOIN_MITER);
+        }
+    }
+
+    private final TrussGeometry G_;    // geometry, topology and forces the shape was built from
+    private final TrussGraph T_;
+    private final Matrix F_;
+    private final int scale_;
+    private final float[] lines_;      // scaled member end points x1, y1, x2, y2
+    private final float[] nodes_;      // scaled x, y of each node with a member
+    private Path2D.Float memberPath_;  // JAVA2D shapes, built lazily
+    private Path2D.Float nodePath_;
+    private PShape memberShape_;       // OpenGL shapes, built lazily
+    private PShape nodeShape_;
+    private boolean noShapes_;         // the renderer has no PShape support
+    private int[] levels_;             // force level of each member, built lazily
+    private int[] colors_;             // stroke color of each member
+    private float[] weights_;          // stroke weight of each member
+    private Path2D.Float[] levelPaths_;  // JAVA2D members of each level, built lazily
+    private PShape colorShape_;        // OpenGL members with colors, built lazily
+
+    /**
+     *  Builds the shape of the truss, whose topology is the given one, at
+     *  the given scale.
+     *
+     *  @throws IllegalArgumentException if topology is not that of the truss
+     */
+    public TrussShape(final Truss truss, TrussTopology topology, int scale) {
+        G_ = truss.geometry();
+        T_ = truss.topology();
+        F_ = truss.forces();
+        scale_ = scale;
+        if (topology.graph() != T_) throw new IllegalArgumentException("Topology is not that of the truss");
+        int E = topology.numElements();
+        lines_ = new float[4*E];
+        boolean[] used = new boolean[G_.numNodes()];
+        for (int e=0; e<E; e++) {
+            int n1 = topology.from(e);
+            int n2 = topology.to(e);
+            lines_[4*e]   = (float)G_.x(n1)*scale;
+            lines_[4*e+1] = (float)G_.y(n1)*scale;
+            lines_[4*e+2] = (float)G_.x(n2)*scale;
+            lines_[4*e+3] = (float)G_.y(n2)*scale;
+            used[n1] = true;
+            used[n2] = true;
+        }
+        int count = 0;
+        for (int v=0; v<used.length; v++) if (used[v]) count++;
+        nodes_ = new float[2*count];
+        for (int v=0, c=0; v<used.length; v++) {
+            if (!used[v]) continue;
+            nodes_[c++] = (float)G_.x(v)*scale;
+            nodes_[c++] = (float)G_.y(v)*scale;
+        }
+    }
+
+    // G E T T E R S
+    public int  numLines() {  return lines_.length/4;  }
+    public int  numNodes() {  return nodes_.length/2;  }
+
+    /**
+     *  Force level of member e, from -LEVELS (largest compression) to
+     *  LEVELS (largest tension), and its color and stroke weight in the
+     *  force colored mode.
+     *
+     *  @throws IllegalStateException if the truss has no forces
+     */
+    public int      level(int e) {  return levels()[e];  }
+    public int      color(int e) {  levels();  return colors_[e];  }
+    public float   weight(int e) {  levels();  return weights_[e];  }
+
+    /**
+     *  True if this shape was built from the given geometry, topology and
+     *  forces at the given scale.
+     */
+    public boolean matches(final TrussGeometry G, final TrussGraph T, final Matrix F, int scale) {
+        return G == G_ && T == T_ && F == F_ && scale == scale_;
+    }
+
+    /**
+     *  Draws the members and, if nodes is true, the nodes.
+     */
+    public void draw(PApplet p5, boolean nodes) {
+        draw(p5, nodes, false);
+    }
+
+    /**
+     *  Draws the members, colored by force if colored is true, and, if
+     *  nodes is true, the nodes.
+     *
+     *  @throws IllegalStateException if colored and the truss has no forces
+     */
+    public void draw(PApplet p5, boolean nodes, boolean colored) {
+        if (colored) levels();
+        if (p5.recorder == null && p5.g instanceof PGraphicsJava2D) {
+            drawJava2D(((PGraphicsJava2D) p5.g).g2, nodes, colored);
+        } else if (p5.recorder == null && shapes(p5)) {
+            p5.shape(colored ? colorShape(p5) : memberShape_);
+            if (nodes) p5.shape(nodeShape_);
+        } else {
+            drawImmediate(p5, nodes, colored);
+        }
+    }
+
+    // force levels, colors and weights of the members
+    private int[] levels() {
+        if (levels_ != null) return levels_;
+        if (F_ == null) throw new IllegalStateException("Analyze the truss first");
+        int E = lines_.length/4;
+        double max = 0;
+        for (int e=0; e<E; e++) max = Math.max(max, Math.abs(F_.get(e, 0)));
+        int[] levels = new int[E];
+        colors_ = new int[E];
+        weights_ = new float[E];
+        for (int e=0; e<E; e++) {
+            int l = (max > 0) ? (int)Math.round(F_.get(e, 0)/max*LEVELS) : 0;
+            levels[e] = l;
+            colors_[e] = RAMP[l+LEVELS];
+            weights_[e] = WEIGHTS[l+LEVELS];
+        }
+        levels_ = levels;
+        return levels;
+    }
+
+    private void drawJava2D(Graphics2D g2, boolean nodes, boolean colored) {
+        if (memberPath_ == null) {
+            memberPath_ = new Path2D.Float(Path2D.WIND_NON_ZERO, lines_.length/2);
+            for (int i=0; i<lines_.length; i+=4) {
+                memberPath_.moveTo(lines_[i], lines_[i+1]);
+                memberPath_.lineTo(lines_[i+2], lines_[i+3]);
+            }
+            nodePath_ = new Path2D.Float();
+            float r = NODE_SIZE/2;
+            for (int i=0; i<nodes_.length; i+=2) {
+                nodePath_.append(new Ellipse2D.Float(nodes_[i]-r, nodes_[i+1]-r, NODE_SIZE, NODE_SIZE), false);
+            }
+        }
+        Paint paint = g2.getPaint();
+        Stroke stroke = g2.getStroke();
+        if (colored) {
+            if (levelPaths_ == null) {
+                levelPaths_ = new Path2D.Float[2*LEVELS+1];
+                for (int e=0; e<levels_.length; e++) {
+                    int l = levels_[e]+LEVELS;
+                    if (levelPaths_[l] == null) levelPaths_[l] = new Path2D.Float();
+                    levelPaths_[l].moveTo(lines_[4*e], lines_[4*e+1]);
+                    levelPaths_[l].lineTo(lines_[4*e+2], lines_[4*e+3]);
+                }
+            }
+            for (int l=0; l<levelPaths_.length; l++) {
+                if (levelPaths_[l] == null) continue;
+                g2.setStroke(RAMP_STROKES[l]);
+                g2.setColor(RAMP_COLORS[l]);
+                g2.draw(levelPaths_[l]);
+            }
+            g2.setStroke(STROKE);
+        } else {
+            g2.setStroke(STROKE);
+            g2.setColor(MEMBER_COLOR);
+            g2.draw(memberPath_);
+        }
+        if (nodes) {
+            g2.setColor(NODE_FILL_COLOR);
+            g2.fill(nodePath_);
+            g2.setColor(NODE_STROKE_COLOR);
+            g2.draw(nodePath_);
+        }
+        g2.setStroke(stroke);
+        g2.setPaint(paint);
+    }
+
+    // builds the PShapes, false if the renderer has no PShape support
+    private boolean shapes(PApplet p5) {
+        if (memberShape_ != null) return true;
+        if (noShapes_) return false;
+        PShape members = p5.createShape();
+        if (members == null) {
+            noShapes_ = true;
+            return false;
+        }
+        members.beginShape(PConstants.LINES);
+        members.noFill();
+        members.stroke((float)MEMBER_STROKE);
+        members.strokeWeight(1);
+        for (int i=0; i<lines_.length; i+=2) members.vertex(lines_[i], lines_[i+1]);
+        members.endShape();
+
+        PShape nodes = p5.createShape(PConstants.GROUP);
+        for (int i=0; i<nodes_.length; i+=2) {
+            PShape node = p5.createShape(PConstants.ELLIPSE, nodes_[i], nodes_[i+1], NODE_SIZE, NODE_SIZE);
+            node.setFill(p5.color(NODE_FILL));
+            node.setStroke(p5.color(NODE_STROKE));
+            node.setStrokeWeight(1);
+            nodes.addChild(node);
+        }
+        memberShape_ = members;
+        nodeShape_ = nodes;
+        return true;
+    }
+
+    // members with per-vertex colors and weights, in one PShape
+    private PShape colorShape(PApplet p5) {
+        if (colorShape_ != null) return colorShape_;
+        PShape members = p5.createShape();
+        members.beginShape(PConstants.LINES);
+        members.noFill();
+        for (int e=0; e<colors_.length; e++) {
+            members.stroke(colors_[e]);
+            members.strokeWeight(weights_[e]);
+            members.vertex(lines_[4*e], lines_[4*e+1]);
+            members.vertex(lines_[4*e+2], lines_[4*e+3]);
+        }
+        members.endShape();
+        colorShape_ = members;
+        return members;
+    }
+
+    private void drawImmediate(PApplet p5, boolean nodes, boolean colored) {
+        p5.stroke(MEMBER_STROKE);
+        p5.strokeWeight(1);
+        for (int i=0; i<lines_.length; i+=4) {
+            if (colored) {
+                p5.stroke(colors_[i/4]);
+                p5.strokeWeight(weights_[i/4]);
+            }
+            p5.line(lines_[i], lines_[i+1], lines_[i+2], lines_[i+3]);
+        }
+        if (nodes) {
+            p5.fill(NODE_FILL);
+            p5.stroke(NODE_STROKE);
+            p5.strokeWeight(1);
+            for (int i=0; i<nodes_.length; i+=2) p5.ellipse(nodes_[i], nodes_[i+1], NODE_SIZE, NODE_SIZE);
+        }
+    }
+
+    // color between a and b (ARGB) at t in [0, 1]
+    private static int lerpColor(int a, int b, float t) {
+        int c = 0;
+        for (int shift=0; shift<32; shift+=8) {
+            int ca = (a >>> shift) & 0xff;
+            int cb = (b >>> shift) & 0xff;
+            c |= Math.round(ca + (cb-ca)*t) << shift;
+        }
+        return c;
+    }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}
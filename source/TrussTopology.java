@@ -0,0 +1,55 @@
+package mit4s48;
+
+/*************************************************************************
+ *  Compilation:  javac TrussTopology.java
+ *  Execution:    java TrussTopology
+ *  Dependencies: TrussGraph.java
+ *
+ *  An immutable truss topology: a frozen TrussGraph together with the
+ *  start and end node of every element, in the order in which Truss
+ *  enumerates its elements (by start node, then by the order of the
+ *  adjacency lists). These are the rows of the topology matrix T of
+ *  StructuralAnalysis.JointMethod. The end nodes are the CSR targets of
+ *  the graph itself; only the start nodes are stored separately.
+ *
+ *  @author Alexandros Haridis, Digital Structures, MIT
+ *************************************************************************/
+
+public class TrussTopology {
+
+    private final TrussGraph graph_; // frozen topology
+    private final int[] from_;       // start node of each element
+    private final int[] to_;         // end node of each element (CSR targets of graph_)
+
+    /**
+     *  Initializes a topology from a graph, which is frozen.
+     */
+    public TrussTopology(final TrussGraph graph) {
+        graph_ = graph.freeze();
+        int[] offsets = graph.offsets();
+        to_ = graph.targets();
+        from_ = new int[to_.length];
+        for (int v=0; v<graph.N(); v++) {
+            for (int e=offsets[v]; e<offsets[v+1]; e++) from_[e] = v;
+        }
+    }
+
+    // G E T T E R S
+    public TrussGraph graph() {  return graph_;  }
+    public int  numElements() {  return from_.length;  }
+    public int    from(int e) {  return from_[e];  }
+    public int      to(int e) {  return to_[e];  }
+
+    /**
+     *  Start and end nodes of all elements, as arrays indexed by element.
+     *  The arrays are shared and must not be modified.
+     */
+    public int[]   starts() {  return from_;  }
+    public int[]     ends() {  return to_;  }
+
+    /**
+     *  Test client and sample execution.
+     */
+    public static void main(String[] args) {}
+
+}